@@ -0,0 +1,126 @@
+package org.decisionGraph;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.DoubleValue;
+import org.knime.core.node.InvalidSettingsException;
+
+/**
+ * Immutable model of a learned decision graph for the classification of data records. The nodes are stored
+ * in primitive arrays (see DecisionGraphModel) and the columns of the split attributes are resolved once against 
+ * the specification of the table to classify. The graph is traversed iteratively.
+ * If a record has a missing value or a value not seen in training on the split attribute of a node,
+ * the most frequent class of the node is predicted.
+ */
+public class CompiledDecisionGraph implements DecisionGraphPredictor {
+
+	// kinds of nodes
+	static final byte LEAF = DecisionGraphModel.LEAF;
+	static final byte NOMINAL = DecisionGraphModel.NOMINAL;
+	static final byte CONTINUOUS = DecisionGraphModel.CONTINUOUS;
+
+	// the arrays are read by DecisionGraphClassGenerator
+	final byte[] kind; // the kind of each node
+	final int[] attribute; // the split attribute of each node (index into column and valueCodes)
+	final double[] cutValue; // the cut value of each continuous split
+	final int[] childOffset; // the position of the first child of each node in the children array
+	final int[] children; // the children of the nodes (continuous split: low, high; nominal: by value code)
+	final int[] mostFreqClass; // the most frequent class of each node (index into classLabels)
+	final int[] column; // the column of each split attribute in the table to classify
+	final Map<DataCell, Integer>[] valueCodes; // the codes of the values of each split attribute
+	final String[] classLabels; // the class values
+
+	/**
+	 * Constructor
+	 * @param model - the model of the learned graph
+	 * @param spec - the specification of the table to classify
+	 * @throws InvalidSettingsException if the table does not contain a split attribute of the graph
+	 */
+	@SuppressWarnings("unchecked")
+	public CompiledDecisionGraph(DecisionGraphModel model, DataTableSpec spec) throws InvalidSettingsException{
+
+		// copy the nodes
+		int n = model.getNumNodes();
+		this.kind = new byte[n];
+		this.attribute = new int[n];
+		this.cutValue = new double[n];
+		this.childOffset = new int[n];
+		this.mostFreqClass = new int[n];
+		for(int i = 0; i < n; i++){
+			this.kind[i] = model.getKind(i);
+			this.attribute[i] = model.getAttribute(i);
+			this.cutValue[i] = model.getCutValue(i);
+			this.childOffset[i] = model.getChildOffset(i);
+			this.mostFreqClass[i] = model.getMostFreqClassCode(i);
+		}
+		this.children = model.getChildren().clone();
+		this.classLabels = model.getClassLabels().clone();
+
+		// resolve the columns of the split attributes
+		String[] attributeNames = model.getAttributeNames();
+		this.column = new int[attributeNames.length];
+		this.valueCodes = new Map[attributeNames.length];
+		for(int a = 0; a < attributeNames.length; a++){
+			this.column[a] = spec.findColumnIndex(attributeNames[a]);
+			if(this.column[a] < 0) throw new InvalidSettingsException("Column " + attributeNames[a] + " not found");
+			if(model.getDictionary(a) != null) this.valueCodes[a] = dictionaryCodes(model.getDictionary(a));
+		}
+	}
+
+	/**
+	 * Method to classify a data record
+	 * @param row - the data record that should be classified
+	 * @return the predicted class value for the data record
+	 */
+	public String classify(DataRow row){
+		return this.classLabels[this.classifyCode(row)];
+	}
+
+	@Override
+	public int classifyCode(DataRow row){
+		int node = 0;
+		while(true){
+			int next = -1;
+			if(this.kind[node] == CONTINUOUS){
+				DataCell cell = row.getCell(this.column[this.attribute[node]]);
+				if(cell instanceof DoubleValue){
+					boolean low = ((DoubleValue) cell).getDoubleValue() <= this.cutValue[node];
+					next = this.children[this.childOffset[node] + (low ? 0 : 1)];
+				}
+			}
+			else if(this.kind[node] == NOMINAL){
+				int a = this.attribute[node];
+				Integer code = this.valueCodes[a].get(row.getCell(this.column[a]));
+				if(code != null) next = this.children[this.childOffset[node] + code];
+			}
+
+			// leaf reached (or no branch for the value of the record)
+			if(next < 0) return this.mostFreqClass[node];
+			node = next;
+		}
+	}
+
+	@Override
+	public String[] getClassLabels(){
+		return this.classLabels;
+	}
+
+	public int getNumNodes(){
+		return this.kind.length;
+	}
+
+	/**
+	 * Method to map the values of a nominal attribute to their codes
+	 * @param dictionary - the values of the attribute (by code)
+	 * @return the map of the codes
+	 */
+	private static Map<DataCell, Integer> dictionaryCodes(DataCell[] dictionary){
+		HashMap<DataCell, Integer> codes = new HashMap<DataCell, Integer>();
+		for(int code = 0; code < dictionary.length; code++) codes.put(dictionary[code], code);
+		return codes;
+	}
+}
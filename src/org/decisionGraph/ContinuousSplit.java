@@ -1,59 +1,71 @@
 package org.decisionGraph;
 
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map.Entry;
-import java.util.TreeSet;
-
-import org.knime.core.data.DataRow;
-import org.knime.core.data.DoubleValue;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.Sets;
-import com.google.common.collect.TreeMultimap;
-
 public class ContinuousSplit {
 	
 	private Data data;
 	private String attribute;
 	private MessageLength messageLength;
-	private Multimap<Double, String> sortedMap;
+	private int[] sortedRows; // the rows of the data sorted by the value of the attribute
+	private int[][] binHistogram; // the class frequencies in the bins of the attribute (if it is binned)
 	private int uniqueValues; 	
+	private int[][] cutClassFreq; // the class frequencies of the lower and the upper subset at the best cut value
 	
 	public ContinuousSplit(Data data, String attribute, MessageLength messageLength){
 		this.data = data;
 		this.attribute = attribute;
 		this.messageLength = messageLength;
-		this.generateSortedMap();
+		if(data.isBinned(attribute)){
+			this.binHistogram = data.getBinHistogram(attribute);
+			this.countNonEmptyBins();
+		}
+		else{
+			this.sortedRows = data.getSortedRows(attribute);
+			this.countUniqueValues();
+		}
 	}
 	
 	/**
 	 * Select the best cut value to split the data on the continuous attribute. 
 	 * The quality of a split is evaluated using the minimum message length principle.
+	 * All cut values between two successive (distinct) values of the attribute are evaluated in a single 
+	 * sweep over the sorted rows: the rows are moved one by one from the upper to the lower subset, and 
+	 * at each cut value the category messages of both subsets are calculated from the class frequencies.
 	 * @return - the cut value producing the split with the lowest message length.	
 	 */
 	protected Double selectBestCutValue() {
+		
+		// if the attribute is binned, only the cut values between the bins are evaluated
+		if(this.binHistogram != null) return this.selectBestBinCutValue();
+		
+		// get the columns of the attribute and the class (class values as dictionary codes)
+		double[] values = this.data.getValues(this.attribute);
+		int[] classCodes = this.data.getCodes(this.data.getClassAttribute());
+		int n = this.sortedRows.length;
 			
-		// get all eligible split values, i.e., points where the class value changes
-        TreeSet<Double> cutValues = getSortedCutValues(this.sortedMap);       
-        
-        // Take a random subset if there are too many possible cut values
-        if(cutValues.size() > 500){        
-        	List<Double> list = new LinkedList<Double>(cutValues);
-        	Collections.shuffle(list);
-        	cutValues = new TreeSet<Double>(list.subList(0, 500));
-        }
+		// initially, all rows are in the upper subset
+		int[] uppFreq = this.data.getClassFreq().clone();
+		int[] lowFreq = new int[uppFreq.length];
         
         // initialize variables		
-		double bestCutValue = cutValues.first();		
-		double length = evalCutValue(cutValues.first());
+		double bestCutValue = Double.NaN;		
+		double length = Double.POSITIVE_INFINITY;
 		
-		// search for the split that produces the smallest message length		
-		for(Double cut : cutValues){			
-			double ml = evalCutValue(cut);
-			if(ml < length){
-				length = ml;
-				bestCutValue = cut;				
+		// move the rows to the lower subset and evaluate the cut between two successive (distinct) values
+		for(int k = 0; k < n - 1; k++){			
+			int c = classCodes[this.sortedRows[k]];
+			uppFreq[c]--;
+			lowFreq[c]++;
+			
+			// search for the split that produces the smallest message length		
+			double value = values[this.sortedRows[k]];
+			double nextValue = values[this.sortedRows[k + 1]];
+			if(value != nextValue){
+				double ml = this.messageLength.encodeCategory(lowFreq) + this.messageLength.encodeCategory(uppFreq);
+				if(ml < length){
+					length = ml;
+					bestCutValue = (value + nextValue) / 2;				
+					this.cutClassFreq = new int[][]{lowFreq.clone(), uppFreq.clone()};
+				}
 			}		
 		}
 		
@@ -62,70 +74,83 @@ public class ContinuousSplit {
 	}
 	
 	/**
-	 * Generate a map in which the entries are sorted by key.
-	 * The key is the value of the numerical attribute, the value is the class attribute.
+	 * Select the best cut value between two bins of a binned attribute. The category messages of the 
+	 * subsets are calculated from the class frequencies in the bins, i.e., the effort does not depend 
+	 * on the number of rows.
+	 * @return - the cut value producing the split with the lowest message length.	
 	 */
-	private void generateSortedMap(){		
+	private Double selectBestBinCutValue() {
+		double[] binCuts = this.data.getBinCuts(this.attribute);
+		int nclasses = this.binHistogram[0].length;
 		
-		// get column index for attribute and class
-		int attributeColIndex = this.data.getColIndex(this.attribute);
-		int classColIndex = this.data.getColIndex(data.getClassAttribute());
-				
-		// loop over the data and put (attribute, class) pairs in a tree multimap to
-		// sort the entries by the value of the numerical attribute	
-		this.sortedMap = TreeMultimap.create();
-		for(DataRow r : this.data.getData()){						
-			double value = ((DoubleValue)r.getCell(attributeColIndex)).getDoubleValue();			
-			String classValue = r.getCell(classColIndex).toString();
-			this.sortedMap.put(value, classValue);					
-		}		
+		// initially, all rows are in the upper subset
+		int[] lowFreq = new int[nclasses];
+		int[] uppFreq = new int[nclasses];
+		for(int[] bin : this.binHistogram){
+			for(int c = 0; c < nclasses; c++) uppFreq[c] += bin[c];
+		}
 		
-		// get the number of unique values of the attribute
-		this.uniqueValues = this.sortedMap.asMap().size();				
-	}	
+		// initialize variables		
+		double bestCutValue = Double.NaN;		
+		double length = Double.POSITIVE_INFINITY;
+		
+		// move the bins to the lower subset and evaluate the cut after each non-empty bin
+		int remaining = this.uniqueValues;
+		for(int b = 0; b < binCuts.length && remaining > 1; b++){
+			int count = 0;
+			for(int c = 0; c < nclasses; c++){
+				lowFreq[c] += this.binHistogram[b][c];
+				uppFreq[c] -= this.binHistogram[b][c];
+				count += this.binHistogram[b][c];
+			}
+			if(count == 0) continue;
+			remaining--;
+			double ml = this.messageLength.encodeCategory(lowFreq) + this.messageLength.encodeCategory(uppFreq);
+			if(ml < length){
+				length = ml;
+				bestCutValue = binCuts[b];
+				this.cutClassFreq = new int[][]{lowFreq.clone(), uppFreq.clone()};
+			}
+		}
+		return bestCutValue;
+	}
 	
 	/**
-	 * Identify all eligible cut values, i.e., those points where the class variable changes
-	 * @param sortedMap - a map in which the entries are sorted by key
-	 * @return set with all eligible cut values
+	 * Count the number of non-empty bins of a binned attribute 
 	 */
-	private TreeSet<Double> getSortedCutValues(Multimap<Double, String> sortedMap){	
-		
-		// generate sorted set to save the split points		
-		TreeSet<Double> cutValues = Sets.newTreeSet();
-		
-		// get the first entry of the map
-		Entry<Double, String> prevEntry = sortedMap.entries().iterator().next();
-		
-		// loop over map entries to find possible cut points
-		for(Entry<Double, String> entry : sortedMap.entries()){			
-			if(!(entry.getValue().equals(prevEntry.getValue()))){
-				double cv = (entry.getKey() + prevEntry.getKey()) / 2;
-				cutValues.add(cv);
-				prevEntry = entry;
+	private void countNonEmptyBins(){
+		this.uniqueValues = 0;
+		for(int[] bin : this.binHistogram){
+			for(int count : bin){
+				if(count > 0){
+					this.uniqueValues++;
+					break;
+				}
 			}
-		}		
-		return cutValues;		
+		}
 	}
 	
 	/**
-	 * Calculate the number of bits needed to encode the category messages for the two subsets
-	 * resulting from a split at the cut value. 
-	 * @param cutValue - the value used to split the data
-	 * @return the overall message length for the resulting subsets
+	 * Count the number of unique values of the attribute
 	 */
-	private double evalCutValue(Double cutValue) {	
-		Data[] subsets = this.data.partition(this.attribute, cutValue);
-		double ml = messageLength.encodeSubset(subsets[0]) + messageLength.encodeSubset(subsets[1]);		
-		return ml;
-	}
+	private void countUniqueValues(){		
+		double[] values = this.data.getValues(this.attribute);
+		this.uniqueValues = 0;
+		for(int k = 0; k < this.sortedRows.length; k++){
+			if(k == 0 || values[this.sortedRows[k]] != values[this.sortedRows[k - 1]]) this.uniqueValues++;
+		}
+	}	
 	
 	public int getUniqueValues(){
 		return this.uniqueValues;		
 	}
 	
-	public Multimap<Double, String> getSortedMap(){
-		return this.sortedMap;
+	/**
+	 * Obtain the class frequencies of the subsets at the best cut value (see selectBestCutValue())
+	 * @return the class frequencies of the lower and the upper subset 
+	 */
+	public int[][] getCutClassFreq(){
+		return this.cutClassFreq;
 	}
 	
 }
@@ -8,61 +8,166 @@ import java.util.Map;
 import org.knime.core.data.DataCell;
 import org.knime.core.node.BufferedDataTable;
 
-import com.google.common.collect.Maps;
-
 import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTable;
 import org.knime.core.data.DoubleValue;
 
 public class Data {	
-	private ArrayList<DataRow> data; // the data saved as an array list of data rows
-	private long nrow;  // the number of rows in the data (number of elements in the array list)
+	private int[] rows; // the indices of the data rows (refer to the columns below); shared by the subsets of numeric partitions
+	private int from; // the first position in the index array belonging to this subset
+	private int to; // the position after the last position in the index array belonging to this subset
+	private long nrow;  // the number of rows in the data (number of positions from 'from' to 'to')
 	private String classAttr; // the class variable in the data object
 	private String[] colNames; // the names of the columns (attributes and class variable); does not change when taking subsets
 	private Map<String, Set<DataCell>> colValues; // mapping of column names to set of values of the variable in the column
 	private Map<String, Integer> colIndex; // mapping of column names to positions of columns in the data
 	private Set<String> attributes; // names of the (remaining) attributes; changes when taking subsets
 	private HashMap<String, String> colTypes; // types of the columns (numeric, string, ...)
+	private int[][] codes; // dictionary codes of the nominal columns (null for numeric columns); shared by all subsets
+	private double[][] values; // values of the numeric columns (null for nominal columns); shared by all subsets
+	private DataCell[][] dictionaries; // mapping of dictionary codes to values for the nominal columns
+	private Map<String, Set<String>> reducedAttributes; // remaining attributes after partitioning by an attribute
+	private int[][] sortedRows; // rows of this subset sorted by the values of the numeric columns (created on demand)
+	private Data parent; // the data that was partitioned to obtain this subset (null if no partition)
+	private Data[] siblings; // all subsets obtained by the partition of the parent (including this subset)
+	private int condCol; // index of the column used to partition the parent 
+	private double condCut; // cut-off value used to partition the parent (if the column is numeric)
+	private Data[] joinSources; // the two data objects that were joined to obtain this data (null if no join)
+	private int[][] binCodes; // bins of the values of the numeric columns (null if the columns are not binned)
+	private double[][] binCuts; // cut values between successive bins of the numeric columns
+	private int[][][] binHistograms; // class frequencies of the bins of the numeric columns (created on demand)
+	private int[] classFreq; // frequencies of the class values (set by the partition or counted on demand)
+	private Object[] columnLocks; // locks of the columns, guard the caches of the subsets of a partition of this data
 	
 	/**
 	 * CONSTRUCTOR 1 (for class BufferedDataTable)
 	 * @param indata - object of class BufferedDataTable
 	 */
 	public Data(BufferedDataTable indata, String classAttr){		
-		this.nrow = indata.size(); 	
+		this(indata, classAttr, 0);
+	}
+	
+	/**
+	 * CONSTRUCTOR 1 (for class BufferedDataTable), numeric columns are discretized into quantile bins
+	 * @param indata - object of class BufferedDataTable
+	 * @param bins - the maximum number of bins for each numeric column (0: numeric columns are not binned)
+	 */
+	public Data(BufferedDataTable indata, String classAttr, int bins){		
+		this(indata, indata.size(), classAttr, bins);
+	}
+	
+	/**
+	 * CONSTRUCTOR 1 (for any DataTable with a known number of rows, e.g., a table created in a test)
+	 * @param indata - the table
+	 * @param nrow - the number of rows of the table
+	 * @param bins - the maximum number of bins for each numeric column (0: numeric columns are not binned)
+	 */
+	Data(DataTable indata, long nrow, String classAttr, int bins){		
+		this.nrow = nrow; 	
 		this.colNames = indata.getDataTableSpec().getColumnNames(); 
 		this.classAttr = classAttr;		
-		this.setData(indata);		
 		this.setColTypes(indata);
 		this.setMaps(indata);
+		this.setData(indata);		
 		this.setAttributesFromColnames();
+		this.createCaches();
+		this.setSortedRows();
+		if(bins > 0) this.setBins(bins);
 	}
 		
 	/**
 	 * CONSTRUCTOR 2 (for class Data)
-	 * @param data - subset of data rows from the initial Data object
+	 * The new object is a view on a range of an index array, i.e., the rows are not copied.
+	 * @param rows - array including the indices of the subset of data rows from the initial Data object
+	 * @param from - the first position of the subset in the index array
+	 * @param to - the position after the last position of the subset in the index array
 	 * @param initData - original data (object of class Data)
 	 */
-	public Data(ArrayList<DataRow> data, Data initData){		
-		this.data = data;
-		this.nrow = data.size();
+	public Data(int[] rows, int from, int to, Data initData){		
+		this.rows = rows;
+		this.from = from;
+		this.to = to;
+		this.nrow = to - from;
 		this.colIndex = initData.getColIndex();
 		this.colValues = initData.getColValues();	
 		this.colNames = initData.getColNames();	
 		this.classAttr = initData.getClassAttribute();
 		this.colTypes = initData.getColTypes();
+		this.codes = initData.codes;
+		this.values = initData.values;
+		this.binCodes = initData.binCodes;
+		this.binCuts = initData.binCuts;
+		this.dictionaries = initData.dictionaries;
 		this.setAttributes(initData.getAttributes());
+		this.createCaches();
 	}
 	
 	/**
-	 * Sets the actual data by looping over the data rows of the BufferedDataTable.
+	 * Sets the actual data by looping over the data rows of the BufferedDataTable. 
+	 * The data is stored column-wise: numeric columns as arrays of doubles, nominal columns (including 
+	 * the class column) as arrays of dictionary codes. The dictionaries are initialized with the domain 
+	 * of the column (see setMaps) and extended by values not included in the domain.
 	 * Used in the first constructor for the class. 
-	 * @param indata - object of class BufferedDataTable
+	 * @param indata - the table
 	 */
-	private void setData(BufferedDataTable indata) {	
-		this.data = new ArrayList<DataRow>();
+	private void setData(DataTable indata) {	
+		int n = (int) this.nrow;
+		int ncol = this.colNames.length;
+		
+		// create the column arrays and the maps from values to dictionary codes
+		this.codes = new int[ncol][];
+		this.values = new double[ncol][];
+		List<Map<DataCell, Integer>> codeMaps = new ArrayList<Map<DataCell, Integer>>();
+		for(int j = 0; j < ncol; j++){
+			if(this.isNumeric(this.colNames[j])){
+				this.values[j] = new double[n];
+				codeMaps.add(null);
+			}
+			else{
+				this.codes[j] = new int[n];
+				Map<DataCell, Integer> codeMap = new LinkedHashMap<DataCell, Integer>();
+				Set<DataCell> domain = this.colValues.get(this.colNames[j]);
+				if(domain != null){
+					for(DataCell c : domain) codeMap.put(c, codeMap.size());
+				}
+				codeMaps.add(codeMap);
+			}
+		}
+		
+		// loop over the data rows and fill the column arrays
+		int i = 0;
 		for(DataRow r : indata){
-			this.data.add(r);		
-		}		
+			for(int j = 0; j < ncol; j++){
+				DataCell c = r.getCell(j);
+				if(this.values[j] != null){
+					this.values[j][i] = ((DoubleValue) c).getDoubleValue();
+				}
+				else{
+					Map<DataCell, Integer> codeMap = codeMaps.get(j);
+					Integer code = codeMap.get(c);
+					if(code == null){
+						code = codeMap.size();
+						codeMap.put(c, code);
+					}
+					this.codes[j][i] = code;
+				}
+			}
+			i++;
+		}
+		
+		// save the dictionaries (code -> value) of the nominal columns
+		this.dictionaries = new DataCell[ncol][];
+		for(int j = 0; j < ncol; j++){
+			if(codeMaps.get(j) != null){
+				this.dictionaries[j] = codeMaps.get(j).keySet().toArray(new DataCell[0]);
+			}
+		}
+		
+		// initially, the data contains all rows
+		this.rows = new int[n];
+		for(int k = 0; k < n; k++) this.rows[k] = k;
+		this.from = 0;
+		this.to = n;
 	}
 		
 	/**
@@ -70,9 +175,9 @@ public class Data {
 	 * (1) Map of column names to the possible column values
 	 * (2) Map of column names to to the corresponding column index
 	 * Used in the first constructor for the class.
-	 * @param indata - object of class BufferedDataTable
+	 * @param indata - the table
 	 */
-	private void setMaps(BufferedDataTable indata){			
+	private void setMaps(DataTable indata){			
 		this.colValues = new HashMap<String, Set<DataCell>>();
 		this.colIndex = new HashMap<String, Integer>();			
 		for(String s : this.colNames){			
@@ -87,83 +192,405 @@ public class Data {
 	
 	/**
 	 * Method to partition the data according to the values of an nominal attribute. 
+	 * The rows are sorted by the dictionary codes of the attribute (counting sort): a first pass counts 
+	 * the rows for each value, a second pass writes the rows to a new index array of the size of this data. 
+	 * The subsets are views on consecutive parts of this array. The rows of this data object are not 
+	 * modified, i.e., the views of this data object and of its ancestors remain valid.
 	 * @param condAttr - the attribute used to partition the data
-	 * @return a map including the subsets of the data
+	 * @return the subsets of the data (the position in the array is the dictionary code of the value)
 	 */
-	protected HashMap<DataCell, Data> partition(String condAttr) {							
+	protected Data[] partition(String condAttr) {							
 			
-		// get the index of the attribute used to partition the data into subsets
+		// get the dictionary codes of the attribute used to partition the data into subsets
 		int condAttrIndex = this.colIndex.get(condAttr);	
+		int[] condCodes = this.codes[condAttrIndex];
+		int nvalues = this.dictionaries[condAttrIndex].length;
 		
-		// create the map and fill it with empty data objects
-		HashMap<DataCell, Data> subsetMap = Maps.newHashMap();						
-		for(DataCell condValue : this.getColValues(condAttr)){					
-			
-			// create the (empty) data object
-			Data subset = new Data(new ArrayList<DataRow>(), this);					
-			
-			// remove the attribute that was used to partition the data
-			subset.setAttributes(RemoveAttribute.rm(subset.getAttributes(), condAttr));
-			
-			subsetMap.put(condValue, subset);
+		// count the rows for each value of the attribute 
+		int[] offsets = new int[nvalues + 1];
+		for(int k = this.from; k < this.to; k++) offsets[condCodes[this.rows[k]] + 1]++;
+		
+		// the subsets start at the cumulated counts of the previous values
+		for(int code = 0; code < nvalues; code++) offsets[code + 1] += offsets[code];
+		
+		// write the rows to the new index array and count the class values of each subset
+		int[] classCodes = this.codes[this.colIndex.get(this.classAttr)];
+		int[][] classFreqs = new int[nvalues][this.getClassDictionary().length];
+		int[] next = Arrays.copyOf(offsets, nvalues);
+		int[] subsetRows = new int[(int) this.nrow];
+		for(int k = this.from; k < this.to; k++){
+			int r = this.rows[k];
+			int code = condCodes[r];
+			subsetRows[next[code]++] = r;
+			classFreqs[code][classCodes[r]]++;
 		}
 		
-		// fill the data objects by adding all elements which have the specified value (condValue) 
-		// on the attribute used to partition the data		
-		for(DataRow r : this.data) subsetMap.get(r.getCell(condAttrIndex)).add(r);				
+		// create the data objects (the remaining attributes are the same for all subsets)
+		Set<String> remainingAttributes = this.getReducedAttributes(condAttr);
+		Data[] subsets = new Data[nvalues];
+		for(int code = 0; code < nvalues; code++){
+			subsets[code] = new Data(subsetRows, offsets[code], offsets[code + 1], this);
+			subsets[code].setAttributes(remainingAttributes);
+			subsets[code].classFreq = classFreqs[code];
+		}
+		this.setPartitionInfo(subsets, condAttrIndex, Double.NaN);
 		
-		return subsetMap;
+		return subsets;
 	}
 		
 	/**
 	 * Method to partition the data into two subsets using a numerical attribute and a cut-off value.
+	 * The rows are rearranged within the range of the index array and the subsets are views 
+	 * on the lower and the upper part of this range. The views of the ancestors contain this range, 
+	 * i.e., they still include the same rows (in a different order).
 	 * @param condAttr - the attribute used to partition the data
 	 * @param cutValue - the value of the numerical attribute at which the split is done
 	 * @return the lower (<= cut) and the upper (> cut) subset
 	 */
 	protected Data[] partition(String condAttr, Double cutValue) {
 		
-		// get the index of the attribute used to partition the data into subsets
-		int condAttrIndex = this.colIndex.get(condAttr);	
+		// get the values of the attribute used to partition the data into subsets
+		double[] condValues = this.values[this.colIndex.get(condAttr)];	
+		double cut = cutValue;
 		
-		// loop over data rows and add respective rows to the subset
-		Data subsetUpp= new Data(new ArrayList<DataRow>(), this);
-		Data subsetLow= new Data(new ArrayList<DataRow>(), this);		
-		for(DataRow r : this.data){		
-						
-			// get the double value of the cell
-			Double cellValue = ((DoubleValue)r.getCell(condAttrIndex)).getDoubleValue();		
-			
-			// take subset by adding all elements which have a greater/smaller value than the cutValue 
-			if(cellValue.compareTo(cutValue) > 0) subsetUpp.add(r);				
-			else subsetLow.add(r);									
+		// move all elements which have a greater value than the cutValue to the end of the range 
+		int low = this.from;
+		int upp = this.to;
+		while(low < upp){		
+			if(Double.compare(condValues[this.rows[low]], cut) > 0) swap(low, --upp);				
+			else low++;									
 		}		
+		Data subsetLow = new Data(this.rows, this.from, low, this);
+		Data subsetUpp = new Data(this.rows, low, this.to, this);
+		
+		// count the class values of the smaller subset, the other frequencies are the difference
+		Data smaller = subsetLow.getNrow() <= subsetUpp.getNrow() ? subsetLow : subsetUpp;
+		Data larger = smaller == subsetLow ? subsetUpp : subsetLow;
+		int[] freq = this.getClassFreq().clone();
+		int[] smallerFreq = smaller.getClassFreq();
+		for(int c = 0; c < freq.length; c++) freq[c] -= smallerFreq[c];
+		larger.classFreq = freq;
 				
 		// Remark: do not remove attribute that was used to partition the data!
 		
-		return new Data[]{subsetLow, subsetUpp};
+		Data[] subsets = new Data[]{subsetLow, subsetUpp};
+		this.setPartitionInfo(subsets, this.colIndex.get(condAttr), cut);
+		
+		return subsets;
 	}
 	
 	/**
-	 * 'Join' two data objects by appending the data rows of another Data object 
+	 * 'Join' two data objects by appending the data rows of another Data object.
+	 * Only the row indices are copied to a new index array.
 	 * @param data 
 	 * @return the 'joined' data (class Data)
 	 */
 	protected Data join(Data otherData){
 		
-		// create new ArrayList to save the data rows of both data objects
-		ArrayList<DataRow> newData = new ArrayList<DataRow>();	
-		newData.addAll(this.getData());
-		newData.addAll(otherData.getData());
+		// create new index array to save the data rows of both data objects
+		int n = (int) (this.nrow + otherData.getNrow());
+		int[] newRows = new int[n];
+		System.arraycopy(this.rows, this.from, newRows, 0, (int) this.nrow);
+		System.arraycopy(otherData.getRows(), otherData.getFrom(), newRows, (int) this.nrow, 
+				(int) otherData.getNrow());
 		
 		// create new Data object
-		Data joinedData = new Data(newData, this);
+		Data joinedData = new Data(newRows, 0, n, this);
 		
 		// set the remaining attributes (intersection of both attribute sets)
-		joinedData.attributes.retainAll(otherData.getAttributes());
+		Set<String> attributes = new HashSet<String>(this.getAttributes());
+		attributes.retainAll(otherData.getAttributes());
+		joinedData.setAttributes(attributes);
+		
+		// remember the joined data objects (the sorted rows are merged on demand)
+		joinedData.joinSources = new Data[]{this, otherData};
+		
+		// the class frequencies are the sums of the class frequencies of both data objects
+		int[] freq = this.getClassFreq().clone();
+		int[] otherFreq = otherData.getClassFreq();
+		for(int c = 0; c < freq.length; c++) freq[c] += otherFreq[c];
+		joinedData.classFreq = freq;
 		
 		return joinedData;
 	}
+	
+	/**
+	 * Obtain the rows of the data sorted by the values of a numeric attribute. 
+	 * The rows are only sorted once for the initial data. For subsets, the sorted rows of the partitioned
+	 * data are distributed to the subsets (preserving the order), for joined data, the sorted rows of the 
+	 * joined data objects are merged. 
+	 * The method may be called concurrently for different subsets (the distribution modifies the siblings).
+	 * The sorted rows of a column are guarded by the lock of the column of the partitioned data (see 
+	 * getLock()), i.e., the rows of different columns or of different partitions are obtained concurrently.
+	 * @param attr - the numeric attribute
+	 * @return array of row indices sorted by the values of the attribute (the length is the number of rows)
+	 */
+	protected int[] getSortedRows(String attr){
+		return this.getSortedRows(this.colIndex.get(attr));
+	}
+	
+	private int[] getSortedRows(int col){
+		synchronized(this.getLock(col)){
+			if(this.sortedRows[col] == null){
+				
+				// (1) subset: distribute the sorted rows of the parent to all subsets of the partition
+				if(this.parent != null && this.parent.hasSortedRows(col)){
+					this.parent.distributeSortedRows(col, this.siblings, this.condCol, this.condCut);
+				}
+				
+				// (2) joined data: merge the sorted rows of the joined data objects
+				else if(this.joinSources != null){
+					this.sortedRows[col] = mergeSortedRows(this.joinSources[0].getSortedRows(col), 
+							this.joinSources[1].getSortedRows(col), this.values[col]);
+				}
+				
+				// (3) otherwise, sort the rows (should not happen, the sorted rows are kept for all leaves)
+				else this.sortedRows[col] = this.sortRows(col);
+			}
+			return this.sortedRows[col];
+		}
+	}
+	
+	/**
+	 * Obtain the lock which guards the caches (sorted rows and bin histograms) of a column of this data object. 
+	 * The subsets of a partition share the lock of the column of the partitioned data, because the caches 
+	 * of all subsets are filled at once. The locks are always acquired from derived data objects to the 
+	 * data objects they are derived from (parent or joined data), so they cannot deadlock.
+	 * @param col - the index of the column
+	 * @return the lock
+	 */
+	private Object getLock(int col){
+		return this.parent != null ? this.parent.columnLocks[col] : this.columnLocks[col];
+	}
+	
+	/**
+	 * Create the (empty) caches and the locks of the columns
+	 */
+	private void createCaches(){
+		int ncol = this.colNames.length;
+		this.sortedRows = new int[ncol][];
+		this.binHistograms = new int[ncol][][];
+		this.columnLocks = new Object[ncol];
+		for(int j = 0; j < ncol; j++) this.columnLocks[j] = new Object();
+	}
+	
+	/**
+	 * Distribute the sorted rows of this data object to the subsets of a partition (the order is preserved).
+	 * Afterwards, the sorted rows of this data object are released.
+	 * @param col - the index of the numeric column 
+	 * @param subsets - the subsets of the partition
+	 * @param condCol - the index of the column used for the partition 
+	 * @param cut - the cut-off value (if the column used for the partition is numeric)
+	 */
+	private void distributeSortedRows(int col, Data[] subsets, int condCol, double cut){
+		
+		// create the arrays for the subsets
+		int[][] subsetRows = new int[subsets.length][];
+		for(int i = 0; i < subsets.length; i++) subsetRows[i] = new int[(int) subsets[i].getNrow()];
+		
+		// loop over the sorted rows and append each row to the array of its subset
+		int[] next = new int[subsets.length];
+		for(int r : this.sortedRows[col]){
+			int i;
+			if(this.values[condCol] != null) i = Double.compare(this.values[condCol][r], cut) > 0 ? 1 : 0;
+			else i = this.codes[condCol][r];
+			subsetRows[i][next[i]++] = r;
+		}
+		
+		// save the sorted rows in the subsets
+		for(int i = 0; i < subsets.length; i++) subsets[i].sortedRows[col] = subsetRows[i];
+		this.sortedRows[col] = null;
+	}
+	
+	/**
+	 * Remember the partition in the subsets (needed to distribute the sorted rows on demand)
+	 */
+	private void setPartitionInfo(Data[] subsets, int condCol, double cut){
+		for(Data subset : subsets){
+			subset.parent = this;
+			subset.siblings = subsets;
+			subset.condCol = condCol;
+			subset.condCut = cut;
+		}
+	}
+	
+	/**
+	 * Sort the rows of the initial data by the values of each numeric column
+	 */
+	private void setSortedRows(){
+		for(int j = 0; j < this.colNames.length; j++){
+			if(this.values[j] != null) this.sortedRows[j] = this.sortRows(j);
+		}
+	}
+	
+	/**
+	 * Discretize the numeric columns into (at most) the specified number of bins with approximately the 
+	 * same number of rows (quantile bins). Rows with equal values are always put in the same bin.
+	 * The sorted rows of the initial data are only needed to find the bins and are released afterwards.
+	 * @param bins - the maximum number of bins
+	 */
+	private void setBins(int bins){
+		int n = (int) this.nrow;
+		this.binCodes = new int[this.colNames.length][];
+		this.binCuts = new double[this.colNames.length][];
+		for(int j = 0; j < this.colNames.length; j++){
+			if(this.values[j] == null) continue;
+			double[] v = this.values[j];
+			int[] sorted = this.sortedRows[j];
+			this.binCodes[j] = new int[n];
+			double[] cuts = new double[bins];
+			
+			// loop over the groups of rows with equal values and close the current bin as soon as it
+			// reaches its share of the rows
+			int bin = 0;
+			int k = 0;
+			while(k < n){
+				int end = k;
+				while(end < n && v[sorted[end]] == v[sorted[k]]) this.binCodes[j][sorted[end++]] = bin;
+				if(end < n && bin < bins - 1 && end >= (long) (bin + 1) * n / bins){
+					cuts[bin] = (v[sorted[end - 1]] + v[sorted[end]]) / 2;
+					bin++;
+				}
+				k = end;
+			}
+			this.binCuts[j] = Arrays.copyOf(cuts, bin);
+			this.sortedRows[j] = null;
+		}
+	}
+	
+	/**
+	 * Obtain the class frequencies in the bins of a (binned) numeric attribute.
+	 * For subsets, the histograms of all subsets of the partition are created at once: the histograms of 
+	 * the smaller subsets are counted, the histogram of the largest subset is obtained by subtracting 
+	 * them from the histogram of the partitioned data.
+	 * @param attr - the numeric attribute
+	 * @return the class frequencies (first index: bin, second index: dictionary code of the class)
+	 */
+	protected int[][] getBinHistogram(String attr){
+		int col = this.colIndex.get(attr);
+		synchronized(this.getLock(col)){
+			if(this.binHistograms[col] == null){
+				if(this.parent != null && this.parent.hasBinHistogram(col)) this.parent.distributeBinHistogram(col, this.siblings);
+				else this.binHistograms[col] = this.countBinHistogram(col);
+			}
+			return this.binHistograms[col];
+		}
+	}
+	
+	/**
+	 * Create the histograms of the subsets of a partition from the histogram of this data object.
+	 * Afterwards, the histogram of this data object is released.
+	 * @param col - the index of the numeric column
+	 * @param subsets - the subsets of the partition
+	 */
+	private void distributeBinHistogram(int col, Data[] subsets){
+		
+		// find the largest subset
+		int largest = 0;
+		for(int i = 1; i < subsets.length; i++){
+			if(subsets[i].getNrow() > subsets[largest].getNrow()) largest = i;
+		}
+		
+		// count the histograms of the other subsets and subtract them from the histogram of this data
+		int[][] rest = new int[this.binHistograms[col].length][];
+		for(int b = 0; b < rest.length; b++) rest[b] = this.binHistograms[col][b].clone();
+		for(int i = 0; i < subsets.length; i++){
+			if(i == largest) continue;
+			subsets[i].binHistograms[col] = subsets[i].countBinHistogram(col);
+			for(int b = 0; b < rest.length; b++){
+				for(int c = 0; c < rest[b].length; c++) rest[b][c] -= subsets[i].binHistograms[col][b][c];
+			}
+		}
+		subsets[largest].binHistograms[col] = rest;
+		this.binHistograms[col] = null;
+	}
+	
+	/**
+	 * Count the class frequencies in the bins of a numeric column by looping over the rows
+	 */
+	private int[][] countBinHistogram(int col){
+		int classCol = this.colIndex.get(this.classAttr);
+		int[][] histogram = new int[this.binCuts[col].length + 1][this.dictionaries[classCol].length];
+		for(int k = this.from; k < this.to; k++){
+			int r = this.rows[k];
+			histogram[this.binCodes[col][r]][this.codes[classCol][r]]++;
+		}
+		return histogram;
+	}
+	
+	private boolean hasBinHistogram(int col){
+		synchronized(this.getLock(col)){
+			return this.binHistograms[col] != null;
+		}
+	}
+	
+	/**
+	 * Sort the rows of the data by the values of a numeric column (stable merge sort) 
+	 * @param col - the index of the numeric column
+	 * @return array of row indices sorted by the values of the column
+	 */
+	private int[] sortRows(int col){
+		double[] v = this.values[col];
+		int n = (int) this.nrow;
+		int[] a = Arrays.copyOfRange(this.rows, this.from, this.to);
+		int[] b = new int[n];
+		for(int width = 1; width < n; width *= 2){
+			for(int lo = 0; lo < n; lo += 2 * width){
+				int mid = Math.min(lo + width, n);
+				int hi = Math.min(lo + 2 * width, n);
+				int i = lo, j = mid, k = lo;
+				while(i < mid && j < hi) b[k++] = (v[a[j]] < v[a[i]]) ? a[j++] : a[i++];
+				while(i < mid) b[k++] = a[i++];
+				while(j < hi) b[k++] = a[j++];
+			}
+			int[] tmp = a; a = b; b = tmp;
+		}
+		return a;
+	}
+	
+	/**
+	 * Merge two arrays of row indices which are sorted by the values of a numeric column 
+	 * @return the merged array of row indices 
+	 */
+	private static int[] mergeSortedRows(int[] a, int[] b, double[] v){
+		int[] merged = new int[a.length + b.length];
+		int i = 0, j = 0, k = 0;
+		while(i < a.length && j < b.length) merged[k++] = (v[b[j]] < v[a[i]]) ? b[j++] : a[i++];
+		while(i < a.length) merged[k++] = a[i++];
+		while(j < b.length) merged[k++] = b[j++];
+		return merged;
+	}
+	
+	private boolean hasSortedRows(int col){
+		synchronized(this.getLock(col)){
+			return this.sortedRows[col] != null;
+		}
+	}
+	
+	/**
+	 * Obtain the remaining attributes after partitioning the data by an attribute. The sets are cached, 
+	 * so that the subsets of repeated (tentative) partitions share the same set.
+	 * @param condAttr - the attribute used to partition the data
+	 * @return the remaining attributes without the attribute used to partition the data
+	 */
+	private Set<String> getReducedAttributes(String condAttr){
+		if(this.reducedAttributes == null) this.reducedAttributes = new HashMap<String, Set<String>>();
+		Set<String> attributes = this.reducedAttributes.get(condAttr);
+		if(attributes == null){
+			attributes = RemoveAttribute.rm(this.getAttributes(), condAttr);
+			this.reducedAttributes.put(condAttr, attributes);
+		}
+		return attributes;
+	}
+	
+	/**
+	 * Swap two positions in the index array
+	 */
+	private void swap(int i, int j){
+		int tmp = this.rows[i];
+		this.rows[i] = this.rows[j];
+		this.rows[j] = tmp;
+	}
 			
 	/**
 	 * Obtain the frequency table for an attribute
@@ -172,28 +599,72 @@ public class Data {
 	 */
 	protected Map<DataCell, Integer> getFreqMap(String attribute){
 		int col = this.getColIndex(attribute);
+		int[] colCodes = this.codes[col];
+		int[] freq = new int[this.dictionaries[col].length];
+		for(int k = this.from; k < this.to; k++) freq[colCodes[this.rows[k]]]++;
 		Map<DataCell, Integer> counter = new HashMap<DataCell, Integer>();	
-		for(DataRow r : this.getData()){	
-			DataCell c = r.getCell(col);
-			if(!counter.containsKey(c)){
-				counter.put(c, 0);
-			}
-			counter.put(c, counter.get(c) + 1);				
+		for(int code = 0; code < freq.length; code++){
+			if(freq[code] > 0) counter.put(this.dictionaries[col][code], freq[code]);
 		}
 		return counter;
 	}
 	
 	/**
-	 * Obtain the vector of class values, i.e., the class column
-	 * @return vector of class values 
+	 * Obtain the frequencies of the class values (counted once, the array must not be modified)
+	 * @return the frequencies (the position in the array is the dictionary code of the class value)
+	 */
+	protected int[] getClassFreq(){
+		if(this.classFreq == null){
+			int[] classCodes = this.codes[this.getColIndex(this.classAttr)];
+			int[] freq = new int[this.getClassDictionary().length];
+			for(int k = this.from; k < this.to; k++) freq[classCodes[this.rows[k]]]++;
+			this.classFreq = freq;
+		}
+		return this.classFreq;
+	}
+	
+	/**
+	 * Obtain the frequencies of the class values for each value of the nominal attributes, i.e., the class 
+	 * frequencies of the subsets a partition by an attribute would produce (without partitioning the data).
+	 * The counts of all attributes are filled in a single scan over the rows.
+	 * @param attributes - the attributes (numeric attributes are ignored)
+	 * @return the frequencies (first index: column index of the attribute, second index: dictionary code of 
+	 * the attribute value, third index: dictionary code of the class value); null for numeric attributes and 
+	 * columns not included in the attributes
 	 */
-	protected ArrayList<DataCell> getClassVec(){
-		ArrayList<DataCell> classArray = new ArrayList<DataCell>();
-		int col = this.getColIndex(this.classAttr);
-		for(DataRow r: this.getData()){
-			classArray.add(r.getCell(col));
+	protected int[][][] getClassFreqCube(Set<String> attributes){
+		int nclasses = this.getClassDictionary().length;
+		int[][][] cube = new int[this.colNames.length][][];
+		
+		// collect the columns of the nominal attributes
+		int[] cols = new int[attributes.size()];
+		int ncols = 0;
+		for(String attr : attributes){
+			int col = this.getColIndex(attr);
+			if(this.codes[col] == null) continue;
+			cube[col] = new int[this.dictionaries[col].length][nclasses];
+			cols[ncols++] = col;
 		}
-		return classArray;
+		
+		// loop over the rows and count the class value for the value of each attribute
+		int[] classCodes = this.codes[this.getColIndex(this.classAttr)];
+		for(int k = this.from; k < this.to; k++){
+			int r = this.rows[k];
+			int c = classCodes[r];
+			for(int j = 0; j < ncols; j++){
+				int col = cols[j];
+				cube[col][this.codes[col][r]][c]++;
+			}
+		}
+		return cube;
+	}
+	
+	/**
+	 * Obtain the class values 
+	 * @return the class values (the position in the array is the dictionary code of the value)
+	 */
+	protected DataCell[] getClassDictionary(){
+		return this.dictionaries[this.getColIndex(this.classAttr)];
 	}
 	
 	/**
@@ -208,9 +679,9 @@ public class Data {
 	
 	/**
 	 * Create a map of column types
-	 * @param indata - object of class BufferedDataTable 
+	 * @param indata - the table 
 	 */
-	private void setColTypes(BufferedDataTable indata){
+	private void setColTypes(DataTable indata){
 		this.colTypes = new HashMap<String, String>();
 		for(String s : this.colNames){
 			String type = indata.getDataTableSpec().getColumnSpec(s).getType().getCellClass().getSimpleName();
@@ -218,17 +689,55 @@ public class Data {
 		}		
 	}
 	
-	public void add(DataRow row){
-		this.data.add(row);
-		this.nrow += 1;
+	/**
+	 * Check if a column is numeric, i.e., stored as an array of double values
+	 * @param attr - the name of the column
+	 * @return true, if the column contains integer or double values
+	 */
+	public boolean isNumeric(String attr){
+		String type = this.colTypes.get(attr);
+		return type.equals("DoubleCell") || type.equals("IntCell");
 	}
 	
 	public HashMap<String, String> getColTypes(){
 		return this.colTypes;
 	}
 	
-	public ArrayList<DataRow> getData(){
-		return this.data;
+	/**
+	 * Check if a numeric column is discretized into bins
+	 * @param attr - the name of the column
+	 * @return true, if the values of the column are binned
+	 */
+	public boolean isBinned(String attr){
+		return this.binCodes != null && this.binCodes[this.colIndex.get(attr)] != null;
+	}
+	
+	public double[] getBinCuts(String attr){
+		return this.binCuts[this.colIndex.get(attr)];
+	}
+	
+	public int[] getRows(){
+		return this.rows;
+	}
+	
+	public int getFrom(){
+		return this.from;
+	}
+	
+	public int getTo(){
+		return this.to;
+	}
+	
+	public double[] getValues(String attr){
+		return this.values[this.colIndex.get(attr)];
+	}
+	
+	public int[] getCodes(String attr){
+		return this.codes[this.colIndex.get(attr)];
+	}
+	
+	public DataCell[] getDictionary(String attr){
+		return this.dictionaries[this.colIndex.get(attr)];
 	}
 		
 	public long getNrow(){
@@ -248,6 +757,7 @@ public class Data {
 	}
 	
 	public void setAttributes(Set<String> attributes){
+		if(attributes != this.attributes) this.reducedAttributes = null;
 		this.attributes = attributes;
 	}
 	
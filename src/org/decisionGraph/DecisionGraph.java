@@ -1,22 +1,40 @@
 package org.decisionGraph;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
 import org.knime.core.data.DoubleValue;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeLogger;
 
 public class DecisionGraph{
 	
+	private static final NodeLogger LOGGER = NodeLogger.getLogger(DecisionGraph.class);
+	
 	private TreeNode root;
 	public Set<String> attributes;
-	public Data trainingData;
-	private ArrayList<TreeNode> leaves = new ArrayList<TreeNode>();	
+	public Data trainingData; // released when the learning has finished (see releaseTrainingData())
+	private Map<String, Integer> colIndex; // the positions of the columns in the training data
+	private DecisionGraphModel model; // the model of the learned graph
+	private LinkedHashSet<TreeNode> leaves = new LinkedHashSet<TreeNode>();	
+	private ArrayList<TreeNode> newLeaves = new ArrayList<TreeNode>(); // leaves added since the last split search	
+	private SplitQueue splitQueue = new SplitQueue(); // the best splits of the leaves
+	private JoinSavingsMemo joinMemo = new JoinSavingsMemo(); // the savings of the joins of leaves tested so far
 	private double messageLength;
 	private MessageLength ml;
 	private boolean allowJoins;
 	private boolean prefJoins;
 	private int maxJoinNodes;
+	private boolean greedyJoins;
+	private int threads;
 	
 	/**
 	 * Constructor 
@@ -27,13 +45,30 @@ public class DecisionGraph{
 	 */
 	public DecisionGraph(Data trainingData, MessageLength ml, boolean allowJoins, 
 			boolean prefJoins, int maxJoinNodes){
+		this(trainingData, ml, allowJoins, prefJoins, maxJoinNodes, false, 1);
+	}
+	
+	/**
+	 * Constructor 
+	 * @param trainingData - the data used to train the classifier
+	 * @param alpha - the parameter of the symmetric Beta prior distribution
+	 * @param allowJoins - if joins are allowed a decision graph instead of a tree is constructed
+	 * @param maxJoinNodes - the maximum number of nodes involved in a join
+	 * @param greedyJoins - if true, joins are searched greedily instead of testing all combinations of nodes
+	 * @param threads - the number of threads used to search for the best split
+	 */
+	public DecisionGraph(Data trainingData, MessageLength ml, boolean allowJoins, 
+			boolean prefJoins, int maxJoinNodes, boolean greedyJoins, int threads){
 		this.root = null;
 		this.trainingData = trainingData;	
 		this.attributes = trainingData.getAttributes();
+		this.colIndex = trainingData.getColIndex();
 		this.ml = ml;		
 		this.allowJoins = allowJoins;	
 		this.prefJoins = prefJoins;
 		this.maxJoinNodes = maxJoinNodes;		
+		this.greedyJoins = greedyJoins;
+		this.threads = threads;
 		this.learnGraph();
 	}	
 		
@@ -42,30 +77,90 @@ public class DecisionGraph{
 	 */
 	public void learnGraph(){										
 						
+		// create the pool of threads used to search for the best operation
+		ForkJoinPool pool = new ForkJoinPool(this.threads);
+		
 		// create object to select the best operation
 		SelectBestOperation selectOp = new SelectBestOperation(this.ml, this.allowJoins, this.prefJoins, 
-				this.maxJoinNodes);		
+				this.maxJoinNodes, this.greedyJoins, pool);		
 
 		// create root node		
 		this.createRootNode();						
 		boolean grow = true;	
-		while(grow){
+		try{
+			while(grow){
 			
-			// select the best operation (split or join) as measured by ML to further grow the graph			
-			Operation bestOp = selectOp.select(this);						
+				// select the best operation (split or join) as measured by ML to further grow the graph			
+				Operation bestOp = selectOp.select(this);						
 			
-			// if nothing can be done to reduce message length, end the while-loop	
-			if(bestOp.getSavings() <= 0) grow = false;								
+				// if nothing can be done to reduce message length, end the while-loop	
+				if(bestOp.getSavings() <= 0) grow = false;								
 		
-			// if message length can be reduced, perform operation on the graph
-			else{						
-				bestOp.perform();
-				bestOp.updateLeaves(this.leaves);				
-				this.updateMessageLength(bestOp.getSavings());								
-			}				
-		}			
+				// if message length can be reduced, perform operation on the graph
+				else{						
+					bestOp.perform();
+					bestOp.updateLeaves(this);
+				
+					// the cached message lengths of the touched subtrees are recomputed when requested
+					bestOp.markDirty();
+					this.updateMessageLength(bestOp.getSavings());								
+				}				
+			}			
+		}
+		finally{
+			pool.shutdown();
+		}
+		this.releaseTrainingData();
 	}	
 	
+	/**
+	 * Method to release the training data when the learning has finished. The model of the graph is created
+	 * first (it needs the dictionaries of the training data), then the data, the cached message lengths and
+	 * the best splits are dropped from all nodes and the search state of the graph is cleared. The nodes keep
+	 * what is needed to classify records and to print the graph (split attributes, split values, children 
+	 * and class frequencies).
+	 */
+	private void releaseTrainingData(){
+		this.model = new DecisionGraphModel(this.root, this.trainingData);
+		long nrow = this.trainingData.getNrow();
+		
+		// release the data of all nodes (nodes resulting from joins are reached from several parents)
+		Set<TreeNode> visited = Collections.newSetFromMap(new IdentityHashMap<TreeNode, Boolean>());
+		ArrayList<TreeNode> stack = new ArrayList<TreeNode>();
+		stack.add(this.root);
+		while(!stack.isEmpty()){
+			TreeNode v = stack.remove(stack.size() - 1);
+			if(!visited.add(v)) continue;
+			v.releaseData();
+			if(!v.isLeaf()) stack.addAll(v.getChildren());
+		}
+		this.trainingData = null;
+		this.newLeaves = new ArrayList<TreeNode>();
+		this.splitQueue = new SplitQueue();
+		this.joinMemo = new JoinSavingsMemo();
+		
+		LOGGER.info("Training data released (" + nrow + " rows): " + visited.size() + " nodes in the graph, " 
+				+ this.model.getNumNodes() + " nodes in the model (approx. " + this.model.getFootprint() + " bytes)");
+	}
+	
+	/**
+	 * Method to create the model used to classify the records of a table
+	 * @param spec - the specification of the table to classify
+	 * @return the compiled graph
+	 * @throws InvalidSettingsException if the table does not contain a split attribute of the graph
+	 */
+	public CompiledDecisionGraph compile(DataTableSpec spec) throws InvalidSettingsException{
+		return this.getModel().compile(spec);
+	}
+	
+	/**
+	 * Method to obtain the model of the learned graph (which does not depend on the training data)
+	 * @return the model
+	 */
+	public DecisionGraphModel getModel(){
+		return this.model;
+	}
+	
 	/**
 	 * Method to start the classification of a data record. 
 	 * @param row - the data record that should be classified	
@@ -98,7 +193,7 @@ public class DecisionGraph{
 			
 			// get the splitting attribute in the node and check which column contains it
 			String attr = node.getSplitAttribute();					
-			int col = this.trainingData.getColIndex(attr);		
+			int col = this.colIndex.get(attr);		
 			
 			// Distinguish between a split on a (1) categorical and a (2) numerical/continuous attribute		
 			// Case (1)
@@ -165,12 +260,36 @@ public class DecisionGraph{
 		return this.attributes;
 	}
 	
-	public ArrayList<TreeNode> getLeaves(){
+	public Set<TreeNode> getLeaves(){
 		return this.leaves;
 	}
 	
 	public void addLeaf(TreeNode leaf){
 		this.leaves.add(leaf);
+		this.newLeaves.add(leaf);
+	}
+	
+	public void removeLeaf(TreeNode leaf){
+		this.leaves.remove(leaf);
+		this.joinMemo.invalidate(leaf);
+	}
+	
+	/**
+	 * Obtain the leaves added since the last call (their best splits are not known yet)
+	 * @return the new leaves
+	 */
+	public List<TreeNode> pollNewLeaves(){
+		List<TreeNode> newLeaves = this.newLeaves;
+		this.newLeaves = new ArrayList<TreeNode>();
+		return newLeaves;
+	}
+	
+	public SplitQueue getSplitQueue(){
+		return this.splitQueue;
+	}
+	
+	public JoinSavingsMemo getJoinMemo(){
+		return this.joinMemo;
 	}
 	
 	public TreeNode getRoot(){
@@ -8,16 +8,28 @@ import org.knime.core.data.def.StringCell;
 
 public class DecisionGraphCellFactory extends SingleCellFactory{
 	
-	private DecisionGraph tree;
+	private DecisionGraphPredictor tree;
+	private DataCell[] classCells; // the cells of the predicted class values (created once, by class code)
 
-	public DecisionGraphCellFactory(DataColumnSpec newColSpec, DecisionGraph tree) {
-		super(newColSpec);
+	/**
+	 * Constructor
+	 * @param newColSpec - the specification of the prediction column
+	 * @param tree - the model used to classify the records
+	 * @param workers - the number of threads used to classify the records
+	 */
+	public DecisionGraphCellFactory(DataColumnSpec newColSpec, DecisionGraphPredictor tree, int workers) {
+		super(workers > 1, workers, 10 * workers, newColSpec);
 		this.tree = tree;
+		String[] classLabels = tree.getClassLabels();
+		this.classCells = new DataCell[classLabels.length];
+		for(int code = 0; code < classLabels.length; code++){
+			this.classCells[code] = new StringCell(classLabels[code]);
+		}
 	}
 
 	@Override
 	public DataCell getCell(DataRow row) {	
-		return new StringCell(tree.classify(row));
+		return this.classCells[tree.classifyCode(row)];
 	}
 
 }
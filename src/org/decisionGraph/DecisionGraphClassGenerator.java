@@ -0,0 +1,316 @@
+package org.decisionGraph;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DoubleValue;
+import org.knime.core.node.NodeLogger;
+
+/**
+ * Generator of a Java class which classifies the data records with the learned graph. The nodes become nested
+ * switch statements on the codes of the nominal values and comparisons with the cut values (as literals),
+ * the columns of the attributes are literals as well. Nodes with several parents (i.e., the nodes resulting
+ * from joins) become methods which are called by each parent. The class is compiled in memory with the
+ * system Java compiler (javax.tools) and loaded in-process.
+ * The generated class predicts the same classes as the CompiledDecisionGraph it is generated from.
+ */
+public class DecisionGraphClassGenerator {
+
+	// number of nodes inlined in a single method of the generated class (larger subgraphs are split into methods)
+	private static final int MAX_INLINE_NODES = 256;
+
+	private static final NodeLogger LOGGER = NodeLogger.getLogger(DecisionGraphClassGenerator.class);
+	private static final String PACKAGE = "org.decisionGraph";
+	private static final AtomicInteger classCounter = new AtomicInteger();
+
+	/**
+	 * Method to generate and load a class that classifies the data records like the given model. If no Java
+	 * compiler is available (e.g., KNIME runs on a JRE) or the class cannot be compiled, the reason is logged 
+	 * as a warning and null is returned (the caller should use the model itself and warn the user).
+	 * @param model - the compiled decision graph
+	 * @return the predictor (null if the class could not be generated)
+	 */
+	public static DecisionGraphPredictor generate(CompiledDecisionGraph model){
+		return generate(model, MAX_INLINE_NODES);
+	}
+	
+	/**
+	 * Method to generate and load a class that classifies the data records like the given model (see above)
+	 * @param model - the compiled decision graph
+	 * @param maxInlineNodes - the number of nodes inlined in a single method of the generated class
+	 * @return the predictor (null if the class could not be generated)
+	 */
+	static DecisionGraphPredictor generate(CompiledDecisionGraph model, int maxInlineNodes){
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if(compiler == null){
+			LOGGER.warn("No Java compiler available (KNIME runs on a JRE), the decision graph is not compiled to a class.");
+			return null;
+		}
+		String className = "GeneratedDecisionGraph" + classCounter.incrementAndGet();
+		try{
+			String source = generateSource(model, className, maxInlineNodes);
+			byte[] classFile = compile(compiler, PACKAGE + "." + className, source);
+			if(classFile == null) return null;
+			Class<?> cls = new GeneratedClassLoader(DecisionGraphPredictor.class.getClassLoader())
+					.define(PACKAGE + "." + className, classFile);
+			return (DecisionGraphPredictor) cls.getConstructor(Map[].class, String[].class)
+					.newInstance(model.valueCodes, model.classLabels);
+		}
+		catch(Exception e){
+			LOGGER.warn("The decision graph could not be compiled to a class: " + e.getMessage(), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Method to generate the source code of the class
+	 * @param model - the compiled decision graph
+	 * @param className - the name of the class
+	 * @param maxInlineNodes - the number of nodes inlined in a single method (larger subgraphs are split into methods)
+	 * @return the source code
+	 */
+	protected static String generateSource(CompiledDecisionGraph model, String className, int maxInlineNodes){
+
+		// count the parents of each node (nodes with several parents become methods)
+		int[] parents = new int[model.kind.length];
+		for(int child : model.children){
+			if(child >= 0) parents[child]++;
+		}
+
+		StringBuilder sb = new StringBuilder();
+		sb.append("package ").append(PACKAGE).append(";\n\n");
+		sb.append("import java.util.Map;\n\n");
+		sb.append("import org.knime.core.data.DataCell;\n");
+		sb.append("import org.knime.core.data.DataRow;\n");
+		sb.append("import org.knime.core.data.DoubleValue;\n\n");
+		sb.append("public final class ").append(className).append(" implements DecisionGraphPredictor {\n\n");
+		sb.append("\tprivate final Map<DataCell, Integer>[] valueCodes;\n");
+		sb.append("\tprivate final String[] classLabels;\n\n");
+		sb.append("\tpublic ").append(className).append("(Map<DataCell, Integer>[] valueCodes, String[] classLabels){\n");
+		sb.append("\t\tthis.valueCodes = valueCodes;\n");
+		sb.append("\t\tthis.classLabels = classLabels;\n");
+		sb.append("\t}\n\n");
+		sb.append("\tpublic String[] getClassLabels(){\n");
+		sb.append("\t\treturn this.classLabels;\n");
+		sb.append("\t}\n\n");
+		sb.append("\tprivate int nominal(DataRow row, int a, int col){\n");
+		sb.append("\t\tInteger code = this.valueCodes[a].get(row.getCell(col));\n");
+		sb.append("\t\treturn code == null ? -1 : code;\n");
+		sb.append("\t}\n\n");
+		sb.append("\tpublic int classifyCode(DataRow row){\n");
+		sb.append("\t\treturn node0(row);\n");
+		sb.append("\t}\n");
+
+		// one method for the root and for each node that is not inlined
+		ArrayList<Integer> methods = new ArrayList<Integer>();
+		boolean[] isMethod = new boolean[model.kind.length];
+		methods.add(0);
+		isMethod[0] = true;
+		for(int m = 0; m < methods.size(); m++){
+			int node = methods.get(m);
+			sb.append("\n\tprivate int node").append(node).append("(DataRow row){\n");
+			appendNode(model, node, "\t\t", parents, new int[1], maxInlineNodes, methods, isMethod, sb);
+			sb.append("\t}\n");
+		}
+		sb.append("}\n");
+		return sb.toString();
+	}
+
+	/**
+	 * Method to append the code of a node and the nodes inlined below it
+	 * @param model - the compiled decision graph
+	 * @param node - the node
+	 * @param indent - the indentation of the code
+	 * @param parents - the number of parents of each node
+	 * @param inlined - the number of nodes inlined in the current method so far
+	 * @param maxInlineNodes - the number of nodes inlined in a single method
+	 * @param methods - the nodes which become methods
+	 * @param isMethod - marks the nodes which become methods
+	 * @param sb - the source code
+	 */
+	private static void appendNode(CompiledDecisionGraph model, int node, String indent, int[] parents,
+			int[] inlined, int maxInlineNodes, ArrayList<Integer> methods, boolean[] isMethod, StringBuilder sb){
+		inlined[0]++;
+		int mostFreqClass = model.mostFreqClass[node];
+		if(model.kind[node] == CompiledDecisionGraph.LEAF){
+			sb.append(indent).append("return ").append(mostFreqClass).append(";\n");
+		}
+		else if(model.kind[node] == CompiledDecisionGraph.CONTINUOUS){
+			int col = model.column[model.attribute[node]];
+			int offset = model.childOffset[node];
+			sb.append(indent).append("DataCell c").append(node).append(" = row.getCell(").append(col).append(");\n");
+			sb.append(indent).append("if(!(c").append(node).append(" instanceof DoubleValue)) return ")
+					.append(mostFreqClass).append(";\n");
+			sb.append(indent).append("if(((DoubleValue) c").append(node).append(").getDoubleValue() <= ")
+					.append(doubleLiteral(model.cutValue[node])).append("){\n");
+			appendChild(model, model.children[offset], indent + "\t", parents, inlined, maxInlineNodes, methods, isMethod, sb);
+			sb.append(indent).append("}\n");
+			sb.append(indent).append("else{\n");
+			appendChild(model, model.children[offset + 1], indent + "\t", parents, inlined, maxInlineNodes, methods, isMethod, sb);
+			sb.append(indent).append("}\n");
+		}
+		else{
+			int a = model.attribute[node];
+			int offset = model.childOffset[node];
+			sb.append(indent).append("switch(nominal(row, ").append(a).append(", ").append(model.column[a])
+					.append(")){\n");
+			for(int code = 0; code < model.valueCodes[a].size(); code++){
+				int child = model.children[offset + code];
+				if(child < 0) continue;
+				sb.append(indent).append("case ").append(code).append(": {\n");
+				appendChild(model, child, indent + "\t", parents, inlined, maxInlineNodes, methods, isMethod, sb);
+				sb.append(indent).append("}\n");
+			}
+			sb.append(indent).append("default:\n");
+			sb.append(indent).append("\treturn ").append(mostFreqClass).append(";\n");
+			sb.append(indent).append("}\n");
+		}
+	}
+
+	/**
+	 * Method to append the code of a child: either the child is inlined or its method is called
+	 * (parameters see appendNode())
+	 */
+	private static void appendChild(CompiledDecisionGraph model, int child, String indent, int[] parents,
+			int[] inlined, int maxInlineNodes, ArrayList<Integer> methods, boolean[] isMethod, StringBuilder sb){
+		if(parents[child] > 1 || inlined[0] >= maxInlineNodes){
+			if(!isMethod[child]){
+				isMethod[child] = true;
+				methods.add(child);
+			}
+			sb.append(indent).append("return node").append(child).append("(row);\n");
+		}
+		else{
+			appendNode(model, child, indent, parents, inlined, maxInlineNodes, methods, isMethod, sb);
+		}
+	}
+
+	/**
+	 * Method to write a double value as a Java expression (which reproduces the value exactly)
+	 * @param value - the value
+	 * @return the Java expression
+	 */
+	private static String doubleLiteral(double value){
+		if(Double.isNaN(value)) return "Double.NaN";
+		if(value == Double.POSITIVE_INFINITY) return "Double.POSITIVE_INFINITY";
+		if(value == Double.NEGATIVE_INFINITY) return "Double.NEGATIVE_INFINITY";
+		return Double.toString(value);
+	}
+
+	/**
+	 * Method to compile the source code of a class in memory
+	 * @param compiler - the Java compiler
+	 * @param className - the full name of the class
+	 * @param source - the source code
+	 * @return the class file (null if the compilation failed, the first error is logged)
+	 * @throws IOException
+	 */
+	private static byte[] compile(JavaCompiler compiler, String className, final String source) throws IOException{
+
+		// the source code is read from a string and the class file is written to a byte array
+		JavaFileObject sourceFile = new SimpleJavaFileObject(
+				URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE){
+			@Override
+			public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+				return source;
+			}
+		};
+		final ByteArrayOutputStream classFile = new ByteArrayOutputStream();
+		StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(null, null, null);
+		JavaFileManager fileManager = new ForwardingJavaFileManager<StandardJavaFileManager>(standardFileManager){
+			@Override
+			public JavaFileObject getJavaFileForOutput(Location location, String name, Kind kind,
+					FileObject sibling) {
+				return new SimpleJavaFileObject(URI.create("bytes:///" + name.replace('.', '/') + kind.extension),
+						kind){
+					@Override
+					public OutputStream openOutputStream() {
+						return classFile;
+					}
+				};
+			}
+		};
+
+		// compile against the classes of this plugin and of KNIME
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+		List<String> options = Arrays.asList("-classpath", classPath(), "-g:none", "-nowarn");
+		boolean success;
+		try{
+			success = compiler.getTask(null, fileManager, diagnostics, options, null, Arrays.asList(sourceFile)).call();
+		}
+		finally{
+			fileManager.close();
+		}
+		if(!success){
+			for(Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()){
+				if(d.getKind() == Diagnostic.Kind.ERROR){
+					LOGGER.warn("The decision graph could not be compiled to a class: " + d.getMessage(null));
+					break;
+				}
+			}
+			return null;
+		}
+		return classFile.toByteArray();
+	}
+
+	/**
+	 * Method to obtain the class path for the compilation of the generated class
+	 * @return the locations of the classes used by the generated class
+	 */
+	private static String classPath(){
+		LinkedHashSet<String> paths = new LinkedHashSet<String>();
+		for(Class<?> cls : new Class<?>[]{DecisionGraphPredictor.class, DataRow.class, DoubleValue.class}){
+			try{
+				CodeSource source = cls.getProtectionDomain().getCodeSource();
+				if(source != null) paths.add(new File(source.getLocation().toURI()).getPath());
+			}
+			catch(Exception e){
+				// location unknown: rely on the class path of the JVM
+			}
+		}
+		paths.add(System.getProperty("java.class.path"));
+		StringBuilder sb = new StringBuilder();
+		for(String path : paths){
+			if(sb.length() > 0) sb.append(File.pathSeparator);
+			sb.append(path);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Class loader for the generated class
+	 */
+	private static class GeneratedClassLoader extends ClassLoader {
+
+		GeneratedClassLoader(ClassLoader parent){
+			super(parent);
+		}
+
+		Class<?> define(String name, byte[] classFile){
+			return defineClass(name, classFile, 0, classFile.length);
+		}
+	}
+}
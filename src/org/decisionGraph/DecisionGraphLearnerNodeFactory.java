@@ -0,0 +1,58 @@
+package org.decisionGraph;
+
+import org.knime.core.node.NodeDialogPane;
+import org.knime.core.node.NodeFactory;
+import org.knime.core.node.NodeView;
+
+/**
+ * <code>NodeFactory</code> for the "DecisionGraph Learner" Node.
+ * 
+ *
+ * @author Tobias Witt
+ */
+public class DecisionGraphLearnerNodeFactory 
+        extends NodeFactory<DecisionGraphLearnerNodeModel> {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DecisionGraphLearnerNodeModel createNodeModel() {
+        return new DecisionGraphLearnerNodeModel();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNrNodeViews() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NodeView<DecisionGraphLearnerNodeModel> createNodeView(final int viewIndex,
+            final DecisionGraphLearnerNodeModel nodeModel) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasDialog() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NodeDialogPane createNodeDialogPane() {
+        return new DecisionGraphNodeDialog(true, false);
+    }
+
+}
+
@@ -0,0 +1,210 @@
+package org.decisionGraph;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Set;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeModel;
+import org.knime.core.node.NodeSettingsRO;
+import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
+import org.knime.core.node.defaultnodesettings.SettingsModelDoubleBounded;
+import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.knime.core.node.port.PortObject;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.port.PortType;
+
+/**
+ * Node model of the decision graph learner. The learned graph is passed to the predictor through the model port.
+ * The settings are the learning settings of the combined node (see DecisionGraphNodeModel).
+ */
+public class DecisionGraphLearnerNodeModel extends NodeModel {
+	
+	// the settings of this node (see DecisionGraphNodeModel)
+	private final SettingsModelString m_class = DecisionGraphNodeModel.createClassModel();
+	private final SettingsModelDoubleBounded m_alpha = DecisionGraphNodeModel.createAlphaModel();
+	private final SettingsModelIntegerBounded m_bins = DecisionGraphNodeModel.createBinsModel();
+	private final SettingsModelIntegerBounded m_threads = DecisionGraphNodeModel.createThreadsModel();
+	private final SettingsModelBoolean m_joins = DecisionGraphNodeModel.createJoinsModel();
+	private final SettingsModelBoolean m_prefjoins = DecisionGraphNodeModel.createPrefJoinsModel();
+	private final SettingsModelBoolean m_restrictjoinnodes = DecisionGraphNodeModel.createRestrictJoinNodesModel();
+	private final SettingsModelIntegerBounded m_maxjoinnodes = DecisionGraphNodeModel.createMaxJoinNodesModel();
+	private final SettingsModelString m_joinsearch = DecisionGraphNodeModel.createJoinSearchModel();
+
+    /**
+     * Constructor for the node model with one input port (training data) and one output port (model)
+     */
+    protected DecisionGraphLearnerNodeModel() {
+        super(new PortType[]{BufferedDataTable.TYPE}, new PortType[]{DecisionGraphPortObject.TYPE});
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected PortObject[] execute(final PortObject[] inObjects,
+            final ExecutionContext exec) throws Exception {
+
+    	// learn the decision graph
+    	BufferedDataTable trainingTable = (BufferedDataTable) inObjects[0];
+    	int maxJoinNodes = m_restrictjoinnodes.getBooleanValue() ? m_maxjoinnodes.getIntValue() : Integer.MAX_VALUE;
+    	DecisionGraph graph = learnGraph(trainingTable, m_class.getStringValue(), m_alpha.getDoubleValue(), 
+    			m_bins.getIntValue(), m_threads.getIntValue(), m_joins.getBooleanValue(), m_prefjoins.getBooleanValue(), 
+    			maxJoinNodes, m_joinsearch.getStringValue().equals(DecisionGraphNodeModel.JOINSEARCH_GREEDY));
+
+    	// output the model of the graph
+    	DecisionGraphPortObjectSpec spec = createModelSpec(trainingTable.getDataTableSpec());
+    	return new PortObject[]{new DecisionGraphPortObject(spec, graph.getModel())};
+    }
+
+    /**
+     * Method to learn a decision graph
+     * @param trainingTable - the training data
+     * @param classColumn - the class attribute
+     * @param alpha - the parameter of the symmetric Beta prior distribution
+     * @param bins - the maximum number of bins for each numeric column (0: numeric columns are not binned)
+     * @param threads - the number of threads used to search for the best split
+     * @param joins - if joins are allowed a decision graph instead of a tree is constructed
+     * @param prefJoins - if true, joins are always preferred
+     * @param maxJoinNodes - the maximum number of nodes involved in a join (Integer.MAX_VALUE: no restriction)
+     * @param greedyJoins - if true, joins are searched greedily instead of testing all combinations of nodes
+     * @return the learned graph
+     * @throws InvalidSettingsException if the class attribute has too many distinct values
+     */
+    static DecisionGraph learnGraph(BufferedDataTable trainingTable, String classColumn, double alpha, int bins,
+    		int threads, boolean joins, boolean prefJoins, int maxJoinNodes, boolean greedyJoins) 
+    		throws InvalidSettingsException {
+
+        // get data and set class attribute
+        Data trainingData = new Data(trainingTable, classColumn, bins);
+
+        // check if domain information for the class variable is available
+        Set<DataCell> classValues = trainingData.getColValues(trainingData.getClassAttribute());
+        if (classValues == null) { throw new InvalidSettingsException(
+           "The class attribute has too many distinct values.");
+        }
+
+        // obtain the number of distinct class values
+        double C = (double) trainingData.getColValues(trainingData.getClassAttribute()).size();
+
+        // create the Message Length object
+        MessageLength ml = new MessageLength(alpha, C, (int) trainingData.getNrow(), maxJoinNodes);
+
+		return new DecisionGraph(trainingData, ml, joins, prefJoins, maxJoinNodes, greedyJoins, threads);
+    }
+
+    /**
+     * Method to create the specification of the model port
+     * @param inSpec - the specification of the training data
+     * @return the specification of the model
+     */
+    private DecisionGraphPortObjectSpec createModelSpec(DataTableSpec inSpec){
+    	String classColumn = m_class.getStringValue();
+    	ArrayList<String> attributes = new ArrayList<String>();
+    	for(String name : inSpec.getColumnNames()){
+    		if(!name.equals(classColumn)) attributes.add(name);
+    	}
+    	return new DecisionGraphPortObjectSpec(classColumn, attributes.toArray(new String[attributes.size()]));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void reset() {
+    	// the model is kept in the output port
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected PortObjectSpec[] configure(final PortObjectSpec[] inSpecs)
+            throws InvalidSettingsException {
+
+    	DataTableSpec inputSpec = (DataTableSpec) inSpecs[0];
+    	DecisionGraphNodeModel.checkClassColumn(inputSpec, m_class);
+    	DecisionGraphNodeModel.checkAttributeColumns(inputSpec, m_class.getStringValue());
+    	return new PortObjectSpec[]{createModelSpec(inputSpec)};
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void saveSettingsTo(final NodeSettingsWO settings) {
+        m_class.saveSettingsTo(settings);
+        m_alpha.saveSettingsTo(settings);
+        m_bins.saveSettingsTo(settings);
+        m_threads.saveSettingsTo(settings);
+        m_joins.saveSettingsTo(settings);
+        m_prefjoins.saveSettingsTo(settings);
+        m_restrictjoinnodes.saveSettingsTo(settings);
+        m_maxjoinnodes.saveSettingsTo(settings);
+        m_joinsearch.saveSettingsTo(settings);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void loadValidatedSettingsFrom(final NodeSettingsRO settings)
+            throws InvalidSettingsException {
+        m_class.loadSettingsFrom(settings);
+        m_alpha.loadSettingsFrom(settings);
+        m_bins.loadSettingsFrom(settings);
+        m_threads.loadSettingsFrom(settings);
+        m_joins.loadSettingsFrom(settings);
+        m_prefjoins.loadSettingsFrom(settings);
+        m_restrictjoinnodes.loadSettingsFrom(settings);
+        m_maxjoinnodes.loadSettingsFrom(settings);
+        m_joinsearch.loadSettingsFrom(settings);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void validateSettings(final NodeSettingsRO settings)
+            throws InvalidSettingsException {
+        m_class.validateSettings(settings);
+        m_alpha.validateSettings(settings);
+        m_bins.validateSettings(settings);
+        m_threads.validateSettings(settings);
+        m_joins.validateSettings(settings);
+        m_prefjoins.validateSettings(settings);
+        m_restrictjoinnodes.validateSettings(settings);
+        m_maxjoinnodes.validateSettings(settings);
+        m_joinsearch.validateSettings(settings);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void loadInternals(final File internDir,
+            final ExecutionMonitor exec) throws IOException,
+            CanceledExecutionException {
+    	// the model is saved with the output port
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void saveInternals(final File internDir,
+            final ExecutionMonitor exec) throws IOException,
+            CanceledExecutionException {
+    	// the model is saved with the output port
+    }
+
+}
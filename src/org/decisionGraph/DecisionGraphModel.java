@@ -0,0 +1,433 @@
+package org.decisionGraph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.DataType;
+import org.knime.core.data.DoubleValue;
+import org.knime.core.data.def.StringCell;
+import org.knime.core.node.InvalidSettingsException;
+
+/**
+ * Immutable model of a learned decision graph which does not depend on the training data. The nodes are
+ * stored in arrays (numbered in depth-first order, the root is node 0). Join nodes are skipped, i.e., the
+ * parents of the joined leaves point directly to the node which results from the join. The children of a
+ * nominal split are stored by the code of the value in the dictionary of the attribute (-1 if there is no child
+ * for a value). The model is saved in a compact binary format (see write()), and it is bound to the table to
+ * classify with compile().
+ */
+public class DecisionGraphModel {
+
+	// kinds of nodes
+	static final byte LEAF = 0;
+	static final byte NOMINAL = 1;
+	static final byte CONTINUOUS = 2;
+
+	// binary format: magic number ("DGRM"), version and types of the nominal values
+	private static final int MAGIC = 0x4447524D;
+	private static final int VERSION = 1;
+	private static final byte MISSING_VALUE = 0;
+	private static final byte STRING_VALUE = 1;
+
+	private final String classColumn; // the name of the class column
+	private final String[] classLabels; // the class values
+	private final String[] attributeNames; // the split attributes
+	private final DataCell[][] dictionaries; // the values of each split attribute (null for continuous splits)
+	private final byte[] kind; // the kind of each node
+	private final int[] attribute; // the split attribute of each node (index into attributeNames, -1 for leaves)
+	private final double[] cutValue; // the cut value of each continuous split
+	private final int[] childOffset; // the position of the first child of each node in the children array
+	private final int[] children; // the children of the nodes (continuous split: low, high; nominal: by value code)
+	private final int[] classFreq; // the class frequencies of the nodes (node by node)
+
+	/**
+	 * Constructor to create the model of a learned graph
+	 * @param root - the root of the graph
+	 * @param trainingData - the data used to learn the graph (for the dictionaries of the nominal attributes)
+	 */
+	public DecisionGraphModel(TreeNode root, Data trainingData){
+
+		// number the nodes in depth-first order (join nodes are replaced by the joined node)
+		IdentityHashMap<TreeNode, Integer> index = new IdentityHashMap<TreeNode, Integer>();
+		ArrayList<TreeNode> nodes = new ArrayList<TreeNode>();
+		ArrayList<TreeNode> stack = new ArrayList<TreeNode>();
+		stack.add(skipJoins(root));
+		while(!stack.isEmpty()){
+			TreeNode v = stack.remove(stack.size() - 1);
+			if(index.containsKey(v)) continue;
+			index.put(v, nodes.size());
+			nodes.add(v);
+			if(!v.isLeaf()){
+				for(int i = v.getChildren().size() - 1; i >= 0; i--){
+					stack.add(skipJoins(v.getChildren().get(i)));
+				}
+			}
+		}
+
+		// get the class values
+		this.classColumn = trainingData.getClassAttribute();
+		DataCell[] classDictionary = trainingData.getClassDictionary();
+		this.classLabels = new String[classDictionary.length];
+		for(int code = 0; code < classDictionary.length; code++){
+			this.classLabels[code] = classDictionary[code].toString();
+		}
+		int nclasses = this.classLabels.length;
+
+		// get the split attributes and the class frequencies of the nodes
+		int n = nodes.size();
+		HashMap<String, Integer> attributes = new HashMap<String, Integer>();
+		ArrayList<String> names = new ArrayList<String>();
+		ArrayList<DataCell[]> values = new ArrayList<DataCell[]>();
+		this.kind = new byte[n];
+		this.attribute = new int[n];
+		this.cutValue = new double[n];
+		this.childOffset = new int[n];
+		this.classFreq = new int[n * nclasses];
+		int nchildren = 0;
+		for(int i = 0; i < n; i++){
+			TreeNode v = nodes.get(i);
+			System.arraycopy(v.getClassFreq(), 0, this.classFreq, i * nclasses, nclasses);
+			if(v.isLeaf()){
+				this.kind[i] = LEAF;
+				this.attribute[i] = -1;
+				continue;
+			}
+			String attr = v.getSplitAttribute();
+			Integer a = attributes.get(attr);
+			if(a == null){
+				a = names.size();
+				attributes.put(attr, a);
+				names.add(attr);
+				values.add(v.getContinuousSplit() ? null : trainingData.getDictionary(attr));
+			}
+			this.attribute[i] = a;
+			this.childOffset[i] = nchildren;
+			if(v.getContinuousSplit()){
+				this.kind[i] = CONTINUOUS;
+				this.cutValue[i] = ((DoubleValue) v.getChildren().get(0).getParentSplitValue()).getDoubleValue();
+				nchildren += 2;
+			}
+			else{
+				this.kind[i] = NOMINAL;
+				nchildren += values.get(a).length;
+			}
+		}
+		this.attributeNames = names.toArray(new String[names.size()]);
+		this.dictionaries = values.toArray(new DataCell[values.size()][]);
+
+		// fill the children array (-1 for values without a child)
+		this.children = new int[nchildren];
+		for(int i = 0; i < n; i++){
+			TreeNode v = nodes.get(i);
+			if(this.kind[i] == CONTINUOUS){
+				this.children[this.childOffset[i]] = index.get(skipJoins(v.getChildren().get(0)));
+				this.children[this.childOffset[i] + 1] = index.get(skipJoins(v.getChildren().get(1)));
+			}
+			else if(this.kind[i] == NOMINAL){
+				DataCell[] dictionary = this.dictionaries[this.attribute[i]];
+				for(int code = 0; code < dictionary.length; code++){
+					this.children[this.childOffset[i] + code] = -1;
+					for(TreeNode child : v.getChildren()){
+						if(dictionary[code].equals(child.getParentSplitValue())){
+							this.children[this.childOffset[i] + code] = index.get(skipJoins(child));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Constructor to create a model from its arrays (used to load a saved model)
+	 */
+	private DecisionGraphModel(String classColumn, String[] classLabels, String[] attributeNames,
+			DataCell[][] dictionaries, byte[] kind, int[] attribute, double[] cutValue, int[] childOffset,
+			int[] children, int[] classFreq){
+		this.classColumn = classColumn;
+		this.classLabels = classLabels;
+		this.attributeNames = attributeNames;
+		this.dictionaries = dictionaries;
+		this.kind = kind;
+		this.attribute = attribute;
+		this.cutValue = cutValue;
+		this.childOffset = childOffset;
+		this.children = children;
+		this.classFreq = classFreq;
+	}
+
+	/**
+	 * Method to save the model in the binary format (version 1):
+	 * header (magic number, version, number of nodes, classes, attributes and children), class column, 
+	 * class values, attributes (name, number of values or -1 for continuous splits, values), 
+	 * then the node arrays: kind, attribute, cut values (continuous splits only), children, class frequencies. 
+	 * Nodes resulting from joins are stored once and referenced by each parent. The child offsets are not saved,
+	 * they follow from the kinds and the sizes of the dictionaries.
+	 * Numbers are written in big-endian byte order, strings as UTF-8 bytes preceded by their length.
+	 * @param out - the stream to which the model is written
+	 * @throws IOException if the stream cannot be written or a nominal value is not a string (such attribute
+	 * columns are rejected by DecisionGraphNodeModel.checkAttributeColumns())
+	 */
+	public void write(OutputStream out) throws IOException{
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+		int n = this.kind.length;
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeInt(n);
+		data.writeInt(this.classLabels.length);
+		data.writeInt(this.attributeNames.length);
+		data.writeInt(this.children.length);
+		writeString(data, this.classColumn);
+		for(String label : this.classLabels) writeString(data, label);
+		for(int a = 0; a < this.attributeNames.length; a++){
+			writeString(data, this.attributeNames[a]);
+			DataCell[] dictionary = this.dictionaries[a];
+			if(dictionary == null){
+				data.writeInt(-1);
+				continue;
+			}
+			data.writeInt(dictionary.length);
+			for(DataCell cell : dictionary){
+				if(cell.isMissing()){
+					data.writeByte(MISSING_VALUE);
+				}
+				else if(cell instanceof StringCell){
+					data.writeByte(STRING_VALUE);
+					writeString(data, ((StringCell) cell).getStringValue());
+				}
+				else throw new IOException("Values of type " + cell.getClass().getSimpleName() + " (attribute " 
+						+ this.attributeNames[a] + ") cannot be saved");
+			}
+		}
+		data.write(this.kind);
+		for(int i = 0; i < n; i++) data.writeInt(this.attribute[i]);
+		for(int i = 0; i < n; i++){
+			if(this.kind[i] == CONTINUOUS) data.writeDouble(this.cutValue[i]);
+		}
+		for(int child : this.children) data.writeInt(child);
+		for(int freq : this.classFreq) data.writeInt(freq);
+		data.flush();
+	}
+
+	/**
+	 * Method to load a model saved with write() from a file. The file is read into a buffer and the node 
+	 * arrays are copied in bulk, i.e., no objects are created for the nodes.
+	 * @param file - the file
+	 * @return the model
+	 * @throws IOException if the file cannot be read or is no valid model
+	 */
+	public static DecisionGraphModel read(File file) throws IOException{
+		FileInputStream in = new FileInputStream(file);
+		try{
+			// read the whole file into a heap buffer (the arrays are copied from the buffer anyway, a mapping 
+			// would only keep the file locked until it is garbage collected)
+			FileChannel channel = in.getChannel();
+			long size = channel.size();
+			if(size > Integer.MAX_VALUE) throw new IOException("The file " + file + " is no valid model");
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			while(buffer.hasRemaining()){
+				if(channel.read(buffer) < 0) throw new IOException("Unexpected end of file " + file);
+			}
+			buffer.flip();
+			return read(buffer);
+		}
+		finally{
+			in.close();
+		}
+	}
+
+	/**
+	 * Method to load a model saved with write()
+	 * @param buffer - the buffer containing the saved model (read from its position on)
+	 * @return the model
+	 * @throws IOException if the buffer contains no valid model
+	 */
+	public static DecisionGraphModel read(ByteBuffer buffer) throws IOException{
+		try{
+			buffer.order(ByteOrder.BIG_ENDIAN);
+			if(buffer.getInt() != MAGIC) throw new IOException("No decision graph model");
+			int version = buffer.getInt();
+			if(version != VERSION) throw new IOException("Unsupported version " + version + " of the model format");
+			int n = buffer.getInt();
+			int nclasses = buffer.getInt();
+			int nattributes = buffer.getInt();
+			int nchildren = buffer.getInt();
+			if(n <= 0 || nclasses < 0 || nattributes < 0 || nchildren < 0) throw new IOException("Invalid model");
+
+			// class values and attributes
+			String classColumn = readString(buffer);
+			String[] classLabels = new String[nclasses];
+			for(int code = 0; code < nclasses; code++) classLabels[code] = readString(buffer);
+			String[] attributeNames = new String[nattributes];
+			DataCell[][] dictionaries = new DataCell[nattributes][];
+			for(int a = 0; a < nattributes; a++){
+				attributeNames[a] = readString(buffer);
+				int size = buffer.getInt();
+				if(size < 0) continue;
+				dictionaries[a] = new DataCell[size];
+				for(int code = 0; code < size; code++){
+					byte type = buffer.get();
+					if(type == MISSING_VALUE) dictionaries[a][code] = DataType.getMissingCell();
+					else if(type == STRING_VALUE) dictionaries[a][code] = new StringCell(readString(buffer));
+					else throw new IOException("Invalid value type " + type);
+				}
+			}
+
+			// nodes
+			byte[] kind = new byte[n];
+			buffer.get(kind);
+			int[] attribute = readInts(buffer, n);
+			double[] cutValue = new double[n];
+			int[] childOffset = new int[n];
+			int offset = 0;
+			for(int i = 0; i < n; i++){
+				childOffset[i] = offset;
+				if(kind[i] == CONTINUOUS){
+					if(attribute[i] < 0 || attribute[i] >= nattributes) throw new IOException("Invalid model");
+					cutValue[i] = buffer.getDouble();
+					offset += 2;
+				}
+				else if(kind[i] == NOMINAL){
+					if(attribute[i] < 0 || attribute[i] >= nattributes || dictionaries[attribute[i]] == null){
+						throw new IOException("Invalid model");
+					}
+					offset += dictionaries[attribute[i]].length;
+				}
+			}
+			if(offset != nchildren) throw new IOException("Invalid model");
+			int[] children = readInts(buffer, nchildren);
+			for(int child : children){
+				if(child < -1 || child >= n) throw new IOException("Invalid model");
+			}
+			int[] classFreq = readInts(buffer, n * nclasses);
+			return new DecisionGraphModel(classColumn, classLabels, attributeNames, dictionaries, kind, attribute,
+					cutValue, childOffset, children, classFreq);
+		}
+		catch(BufferUnderflowException e){
+			throw new IOException("Incomplete decision graph model");
+		}
+	}
+
+	/**
+	 * Method to create the model used to classify the records of a table
+	 * @param spec - the specification of the table to classify
+	 * @return the compiled graph
+	 * @throws InvalidSettingsException if the table does not contain a split attribute of the graph
+	 */
+	public CompiledDecisionGraph compile(DataTableSpec spec) throws InvalidSettingsException{
+		return new CompiledDecisionGraph(this, spec);
+	}
+
+	/**
+	 * Obtain the code of the most frequent class value in a node
+	 * @param node - the node
+	 * @return the code of the most frequent class (the first one if there are several)
+	 */
+	public int getMostFreqClassCode(int node){
+		int nclasses = this.classLabels.length;
+		int offset = node * nclasses;
+		int maxCode = 0;
+		for(int code = 1; code < nclasses; code++){
+			if(this.classFreq[offset + code] > this.classFreq[offset + maxCode]) maxCode = code;
+		}
+		return maxCode;
+	}
+
+	/**
+	 * Method to estimate the memory used by the model: the node arrays, the class values and the 
+	 * dictionaries of the attributes (8 bytes per reference; headers of objects and arrays are not counted)
+	 * @return the approximate size of the model in bytes
+	 */
+	public long getFootprint(){
+		long bytes = this.kind.length + 4L * this.attribute.length + 8L * this.cutValue.length 
+				+ 4L * this.childOffset.length + 4L * this.children.length + 4L * this.classFreq.length;
+		for(String label : this.classLabels) bytes += 8 + 2 * label.length();
+		for(int a = 0; a < this.attributeNames.length; a++){
+			bytes += 8 + 2 * this.attributeNames[a].length();
+			if(this.dictionaries[a] != null) bytes += 8L * this.dictionaries[a].length;
+		}
+		return bytes;
+	}
+
+	public String getClassColumn(){
+		return this.classColumn;
+	}
+
+	public String[] getClassLabels(){
+		return this.classLabels;
+	}
+
+	public String[] getAttributeNames(){
+		return this.attributeNames;
+	}
+
+	public DataCell[] getDictionary(int attribute){
+		return this.dictionaries[attribute];
+	}
+
+	public int getNumNodes(){
+		return this.kind.length;
+	}
+
+	public byte getKind(int node){
+		return this.kind[node];
+	}
+
+	public int getAttribute(int node){
+		return this.attribute[node];
+	}
+
+	public double getCutValue(int node){
+		return this.cutValue[node];
+	}
+
+	public int getChildOffset(int node){
+		return this.childOffset[node];
+	}
+
+	public int[] getChildren(){
+		return this.children;
+	}
+
+	/**
+	 * Method to skip join nodes (they have a single child)
+	 * @param node - a node of the graph
+	 * @return the first node below the given node which is no join node
+	 */
+	private static TreeNode skipJoins(TreeNode node){
+		while(node.isJoin()) node = node.getChildren().get(0);
+		return node;
+	}
+
+	private static void writeString(DataOutputStream data, String s) throws IOException{
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		data.writeInt(bytes.length);
+		data.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer){
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static int[] readInts(ByteBuffer buffer, int n){
+		int[] values = new int[n];
+		buffer.asIntBuffer().get(values);
+		buffer.position(buffer.position() + 4 * n);
+		return values;
+	}
+}
@@ -7,30 +7,82 @@ import org.knime.core.node.defaultnodesettings.DefaultNodeSettingsPane;
 import org.knime.core.node.defaultnodesettings.DialogComponentBoolean;
 import org.knime.core.node.defaultnodesettings.DialogComponentColumnNameSelection;
 import org.knime.core.node.defaultnodesettings.DialogComponentNumberEdit;
+import org.knime.core.node.defaultnodesettings.DialogComponentStringSelection;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
+import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
 
 public class DecisionGraphNodeDialog extends DefaultNodeSettingsPane {
 
-    @SuppressWarnings({ "unchecked"})
 	protected DecisionGraphNodeDialog() {
+		this(true, true);
+	}
+	
+	/**
+	 * Constructor for the dialog of the learner and/or the predictor
+	 * @param learner - if true, the settings for learning the graph are shown
+	 * @param predictor - if true, the settings for the prediction are shown
+	 */
+    @SuppressWarnings({ "unchecked"})
+	protected DecisionGraphNodeDialog(boolean learner, boolean predictor) {
     super();
         
     	// GENERAL SETTINGS
     	createNewGroup("General");
     	
+    	if(learner){
     	// class attribute
     	addDialogComponent(new DialogComponentColumnNameSelection(
-    			DecisionGraphNodeModel.m_class, 
+    			DecisionGraphNodeModel.createClassModel(), 
     			DecisionGraphNodeModel.CFGKEY_CLASS,
     			0, true, NominalValue.class));
         
     	// alpha parameter of the Beta prior distribution over unknown class probabilities
         addDialogComponent(new DialogComponentNumberEdit(
-                DecisionGraphNodeModel.m_alpha, 
+                DecisionGraphNodeModel.createAlphaModel(), 
                 DecisionGraphNodeModel.CFGKEY_ALPHA));
         
+        // number of bins for numeric attributes (0: no binning)
+        addDialogComponent(new DialogComponentNumberEdit(
+                DecisionGraphNodeModel.createBinsModel(), 
+                DecisionGraphNodeModel.CFGKEY_BINS));
+        
+        // number of threads used to search for the best split
+        addDialogComponent(new DialogComponentNumberEdit(
+                DecisionGraphNodeModel.createThreadsModel(), 
+                DecisionGraphNodeModel.CFGKEY_THREADS));
+    	}
+        
+    	if(predictor){
+        // number of threads used to classify the test data
+        addDialogComponent(new DialogComponentNumberEdit(
+                DecisionGraphNodeModel.createWorkersModel(), 
+                DecisionGraphNodeModel.CFGKEY_WORKERS));
+        
+        // compile the learned graph to a Java class for the prediction
+        addDialogComponent(new DialogComponentBoolean(
+        		DecisionGraphNodeModel.createGenerateCodeModel(), 
+        		DecisionGraphNodeModel.CFGKEY_GENERATECODE));
+    	}
+        
+    	if(learner) addJoinSettings();
+    }
+    
+    /**
+     * Add the settings of the join operations to the dialog
+     */
+    private void addJoinSettings() {
+    	
+    	// the settings of the joins (the components are enabled depending on each other)
+    	final SettingsModelBoolean joins = DecisionGraphNodeModel.createJoinsModel();
+    	final SettingsModelBoolean prefJoins = DecisionGraphNodeModel.createPrefJoinsModel();
+    	final SettingsModelBoolean restrictJoinNodes = DecisionGraphNodeModel.createRestrictJoinNodesModel();
+    	final SettingsModelIntegerBounded maxJoinNodes = DecisionGraphNodeModel.createMaxJoinNodesModel();
+    	final SettingsModelString joinSearch = DecisionGraphNodeModel.createJoinSearchModel();
+        
         // allow joins (Decision Graph or Decision Tree)
         addDialogComponent(new DialogComponentBoolean(
-        		DecisionGraphNodeModel.m_joins, 
+        		joins, 
         		DecisionGraphNodeModel.CFGKEY_JOINS));
         
         // JOIN SETTINGS
@@ -38,56 +90,67 @@ public class DecisionGraphNodeDialog extends DefaultNodeSettingsPane {
         
         // always prefer joins over splits?
         addDialogComponent(new DialogComponentBoolean(
-        		DecisionGraphNodeModel.m_prefjoins, 
+        		prefJoins, 
         		DecisionGraphNodeModel.CFGKEY_PREFJOINS));
         
         // restrict the number of nodes which form a join?
         addDialogComponent(new DialogComponentBoolean(
-        		DecisionGraphNodeModel.m_restrictjoinnodes, 
+        		restrictJoinNodes, 
         		DecisionGraphNodeModel.CFGKEY_RESTRICTJOINNODES));
         
         // if number of nodes in join is restricted, specify maximum number
         addDialogComponent(new DialogComponentNumberEdit(
-                DecisionGraphNodeModel.m_maxjoinnodes, ""));                      
+                maxJoinNodes, ""));                      
+        
+        // search strategy for joins (exhaustive or greedy)
+        addDialogComponent(new DialogComponentStringSelection(
+        		joinSearch, 
+        		DecisionGraphNodeModel.CFGKEY_JOINSEARCH,
+        		DecisionGraphNodeModel.JOINSEARCH_EXHAUSTIVE, 
+        		DecisionGraphNodeModel.JOINSEARCH_GREEDY));
         
         // add change listeners so that join settings are only accessible if joins are allowed
-       DecisionGraphNodeModel.m_joins.addChangeListener(
+        joins.addChangeListener(
+        		new ChangeListener() {
+        			@Override
+        			public void stateChanged(ChangeEvent arg0) {        			
+        				prefJoins.setEnabled(joins.getBooleanValue());		
+        			}
+        		}
+        );
+        
+        joins.addChangeListener(
         		new ChangeListener() {
         			@Override
         			public void stateChanged(ChangeEvent arg0) {        			
-        				DecisionGraphNodeModel.m_prefjoins.
-        				setEnabled(DecisionGraphNodeModel.m_joins.getBooleanValue());		
+        				restrictJoinNodes.setEnabled(joins.getBooleanValue());		
         			}
         		}
         );
         
-        DecisionGraphNodeModel.m_joins.addChangeListener(
+        joins.addChangeListener(
         		new ChangeListener() {
         			@Override
         			public void stateChanged(ChangeEvent arg0) {        			
-        				DecisionGraphNodeModel.m_restrictjoinnodes.
-        				setEnabled(DecisionGraphNodeModel.m_joins.getBooleanValue());		
+        				joinSearch.setEnabled(joins.getBooleanValue());		
         			}
         		}
         );
         
-        DecisionGraphNodeModel.m_joins.addChangeListener(
+        joins.addChangeListener(
         		new ChangeListener() {
         			@Override
         			public void stateChanged(ChangeEvent arg0) {        			
-        				DecisionGraphNodeModel.m_maxjoinnodes.
-        				setEnabled(DecisionGraphNodeModel.m_joins.getBooleanValue() &&
-        						   DecisionGraphNodeModel.m_restrictjoinnodes.getBooleanValue());		
+        				maxJoinNodes.setEnabled(joins.getBooleanValue() && restrictJoinNodes.getBooleanValue());		
         			}
         		}
         );          
         
-        DecisionGraphNodeModel.m_restrictjoinnodes.addChangeListener(
+        restrictJoinNodes.addChangeListener(
         		new ChangeListener() {
         			@Override
         			public void stateChanged(ChangeEvent arg0) {        		
-        				DecisionGraphNodeModel.m_maxjoinnodes.
-        				setEnabled(DecisionGraphNodeModel.m_restrictjoinnodes.getBooleanValue());		
+        				maxJoinNodes.setEnabled(restrictJoinNodes.getBooleanValue());		
         			}
         		}
         );  
@@ -1,16 +1,15 @@
 package org.decisionGraph;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Set;
+import java.io.OutputStream;
 
-import org.knime.core.data.DataCell;
 import org.knime.core.data.DataColumnSpec;
-import org.knime.core.data.DataColumnSpecCreator;
 import org.knime.core.data.DataTableSpec;
 import org.knime.core.data.NominalValue;
-import org.knime.core.data.container.CellFactory;
-import org.knime.core.data.container.ColumnRearranger;
+import org.knime.core.data.def.DoubleCell;
+import org.knime.core.data.def.IntCell;
 import org.knime.core.data.def.StringCell;
 import org.knime.core.node.BufferedDataTable;
 import org.knime.core.node.CanceledExecutionException;
@@ -27,40 +26,103 @@ import org.knime.core.node.NodeSettingsWO;
 
 public class DecisionGraphNodeModel extends NodeModel {
     
-	// SETTINGS 	
+	// SETTINGS (each node has its own instances, the dialog creates them with the same methods)
 	// class attribute
 	static final String CFGKEY_CLASS = "Select class attribute";
-	public static final SettingsModelString m_class = new SettingsModelString(CFGKEY_CLASS, "");
+	static SettingsModelString createClassModel(){
+		return new SettingsModelString(CFGKEY_CLASS, "");
+	}
 	
 	// alpha parameter of the Beta prior distribution over unknown class probabilities
 	static final String CFGKEY_ALPHA = "Parameter of Beta prior";
 	static final double DEFAULT_ALPHA = 0.5;
-	public static final SettingsModelDoubleBounded m_alpha = 
-			new SettingsModelDoubleBounded(CFGKEY_ALPHA, DEFAULT_ALPHA, 0, 1);
+	static SettingsModelDoubleBounded createAlphaModel(){
+		return new SettingsModelDoubleBounded(CFGKEY_ALPHA, DEFAULT_ALPHA, 0, 1);
+	}
+	
+	// number of (quantile) bins for numeric attributes (0: no binning, all cut values are evaluated)
+	static final String CFGKEY_BINS = "Number of bins for numeric attributes (0 = no binning)";
+	static final int DEFAULT_BINS = 0;
+	static SettingsModelIntegerBounded createBinsModel(){
+		return new SettingsModelIntegerBounded(CFGKEY_BINS, DEFAULT_BINS, 0, Integer.MAX_VALUE);
+	}
+	
+	// number of threads used to search for the best split
+	static final String CFGKEY_THREADS = "Number of threads";
+	static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors();
+	static SettingsModelIntegerBounded createThreadsModel(){
+		return new SettingsModelIntegerBounded(CFGKEY_THREADS, DEFAULT_THREADS, 1, Integer.MAX_VALUE);
+	}
+	
+	// number of threads used to classify the test data
+	static final String CFGKEY_WORKERS = "Number of prediction threads";
+	static final int DEFAULT_WORKERS = Runtime.getRuntime().availableProcessors();
+	static SettingsModelIntegerBounded createWorkersModel(){
+		return new SettingsModelIntegerBounded(CFGKEY_WORKERS, DEFAULT_WORKERS, 1, Integer.MAX_VALUE);
+	}
+	
+	// compile the learned graph to a Java class for the prediction
+	static final String CFGKEY_GENERATECODE = "Compile the graph to a Java class for the prediction";
+	static final boolean DEFAULT_GENERATECODE = false;
+	static SettingsModelBoolean createGenerateCodeModel(){
+		return new SettingsModelBoolean(CFGKEY_GENERATECODE, DEFAULT_GENERATECODE);
+	}
 	
 	// allow joins (Decision Graph or Decision Tree)
 	static final String CFGKEY_JOINS = "Allow joins (Decision Graph)";
 	static final boolean DEFAULT_JOINS = true;
-	public static final SettingsModelBoolean m_joins = 
-			new SettingsModelBoolean(CFGKEY_JOINS, DEFAULT_JOINS);
+	static SettingsModelBoolean createJoinsModel(){
+		return new SettingsModelBoolean(CFGKEY_JOINS, DEFAULT_JOINS);
+	}
 	
 	// always prefer joins 
 	static final String CFGKEY_PREFJOINS = "Always prefer join operation";
 	static final boolean DEFAULT_PREFJOINS = false;
-	public static final SettingsModelBoolean m_prefjoins = 
-			new SettingsModelBoolean(CFGKEY_PREFJOINS, DEFAULT_PREFJOINS);
+	static SettingsModelBoolean createPrefJoinsModel(){
+		return new SettingsModelBoolean(CFGKEY_PREFJOINS, DEFAULT_PREFJOINS);
+	}
 	
 	// restrict the number of nodes which form a join?
 	static final String CFGKEY_RESTRICTJOINNODES = "Restrict max. number of nodes in a join";
 	static final boolean DEFAULT_RESTRICTJOINNODES = false;
-	public static final SettingsModelBoolean m_restrictjoinnodes = 
-    		new SettingsModelBoolean(CFGKEY_RESTRICTJOINNODES, DEFAULT_RESTRICTJOINNODES);
+	static SettingsModelBoolean createRestrictJoinNodesModel(){
+		return new SettingsModelBoolean(CFGKEY_RESTRICTJOINNODES, DEFAULT_RESTRICTJOINNODES);
+	}
 	
 	// if number of nodes in join is restricted, specify maximum number
 	static final String CFGKEY_MAXJOINNODES = "Maximum Number of Nodes in Join";
 	static final int DEFAULT_MAXJOINNODES = 20;
-	public static final SettingsModelIntegerBounded m_maxjoinnodes = 
-    		new SettingsModelIntegerBounded(CFGKEY_MAXJOINNODES, DEFAULT_MAXJOINNODES, 2, Integer.MAX_VALUE);
+	static SettingsModelIntegerBounded createMaxJoinNodesModel(){
+		return new SettingsModelIntegerBounded(CFGKEY_MAXJOINNODES, DEFAULT_MAXJOINNODES, 2, Integer.MAX_VALUE);
+	}
+	
+	// search strategy for joins (exhaustive: all combinations of nodes, greedy: polynomial time)
+	static final String CFGKEY_JOINSEARCH = "Join search";
+	static final String JOINSEARCH_EXHAUSTIVE = "Exhaustive";
+	static final String JOINSEARCH_GREEDY = "Greedy";
+	static final String DEFAULT_JOINSEARCH = JOINSEARCH_EXHAUSTIVE;
+	static SettingsModelString createJoinSearchModel(){
+		return new SettingsModelString(CFGKEY_JOINSEARCH, DEFAULT_JOINSEARCH);
+	}
+	
+	// the settings of this node
+	private final SettingsModelString m_class = createClassModel();
+	private final SettingsModelDoubleBounded m_alpha = createAlphaModel();
+	private final SettingsModelIntegerBounded m_bins = createBinsModel();
+	private final SettingsModelIntegerBounded m_threads = createThreadsModel();
+	private final SettingsModelIntegerBounded m_workers = createWorkersModel();
+	private final SettingsModelBoolean m_generatecode = createGenerateCodeModel();
+	private final SettingsModelBoolean m_joins = createJoinsModel();
+	private final SettingsModelBoolean m_prefjoins = createPrefJoinsModel();
+	private final SettingsModelBoolean m_restrictjoinnodes = createRestrictJoinNodesModel();
+	private final SettingsModelIntegerBounded m_maxjoinnodes = createMaxJoinNodesModel();
+	private final SettingsModelString m_joinsearch = createJoinSearchModel();
+     
+    // file of the learned graph in the internals of the node
+    private static final String MODEL_FILE = "model.dgm";
+    
+    // the learned graph (null if the node was not executed)
+    private DecisionGraphModel m_model = null;
      
     /**
      * Constructor for the node model with two input ports
@@ -78,39 +140,22 @@ public class DecisionGraphNodeModel extends NodeModel {
     protected BufferedDataTable[] execute(final BufferedDataTable[] inData,
             final ExecutionContext exec) throws Exception {
   
-        // get data and set class attribute
-        Data trainingData = new Data(inData[0], m_class.getStringValue());        
-              
-        // check if domain information for the class variable is available
-        Set<DataCell> classValues = trainingData.getColValues(trainingData.getClassAttribute());
-        if (classValues == null) { throw new InvalidSettingsException(
-           "The class attribute has too many distinct values.");
-        }    
-        
-        // obtain the number of distinct class values
-        double C = (double) trainingData.getColValues(trainingData.getClassAttribute()).size();
-                       
-        // create the Message Length object
-        MessageLength ml = new MessageLength(m_alpha.getDoubleValue(), C);
-               
-        // learn the decision graph    
-        if(!m_restrictjoinnodes.getBooleanValue()) m_maxjoinnodes.setIntValue(Integer.MAX_VALUE);     
-		DecisionGraph graph = new DecisionGraph(trainingData, ml, m_joins.getBooleanValue(), 
-				m_prefjoins.getBooleanValue(), m_maxjoinnodes.getIntValue());				
+        // learn the decision graph (see the learner node)
+        int maxJoinNodes = m_restrictjoinnodes.getBooleanValue() ? m_maxjoinnodes.getIntValue() : Integer.MAX_VALUE;
+        DecisionGraph graph = DecisionGraphLearnerNodeModel.learnGraph(inData[0], m_class.getStringValue(), 
+        		m_alpha.getDoubleValue(), m_bins.getIntValue(), m_threads.getIntValue(), m_joins.getBooleanValue(), 
+        		m_prefjoins.getBooleanValue(), maxJoinNodes, m_joinsearch.getStringValue().equals(JOINSEARCH_GREEDY));
+        m_model = graph.getModel();
 				
-		// make prediction for test data set
-		BufferedDataTable testData = inData[1];
-        CellFactory cellFactory = 
-        		new DecisionGraphCellFactory(createOutputColumnSpec(testData.getDataTableSpec()), graph);
-        
-        // create the column re-arranger
-        ColumnRearranger outputTable = new ColumnRearranger(testData.getDataTableSpec());
-        
-        // append the new column
-        outputTable.append(cellFactory);     
-         
-        // create the actual output table
-        BufferedDataTable bufferedOutput = exec.createColumnRearrangeTable(testData, outputTable, exec);
+		// make prediction for test data set (see the predictor node)
+        boolean generateCode = m_generatecode.getBooleanValue();
+        DecisionGraphPredictor predictor = DecisionGraphPredictorNodeModel.createPredictor(m_model, 
+        		inData[1].getDataTableSpec(), generateCode);
+        if(generateCode && predictor instanceof CompiledDecisionGraph){
+        	setWarningMessage(DecisionGraphPredictorNodeModel.GENERATE_CODE_WARNING);
+        }
+        BufferedDataTable bufferedOutput = DecisionGraphPredictorNodeModel.predict(predictor, 
+        		m_model.getClassColumn(), inData[1], m_workers.getIntValue(), exec);
                 
         return new BufferedDataTable[]{bufferedOutput};	        
     }
@@ -120,9 +165,7 @@ public class DecisionGraphNodeModel extends NodeModel {
      */
     @Override
     protected void reset() {
-        // TODO Code executed on reset.
-        // Models build during execute are cleared here.
-        // Also data handled in load/saveInternals will be erased here.
+        m_model = null;
     }
 
     /**
@@ -133,6 +176,23 @@ public class DecisionGraphNodeModel extends NodeModel {
             throws InvalidSettingsException {
     	
     	DataTableSpec inputSpec = inSpecs[0];
+    	checkClassColumn(inputSpec, m_class);
+    	checkAttributeColumns(inputSpec, m_class.getStringValue());
+    	
+    	// create output table specification
+    	DataTableSpec outputSpec = DecisionGraphPredictorNodeModel.createOutputTableSpec(m_class.getStringValue(), 
+    			inputSpec);    	
+    	return new DataTableSpec[]{outputSpec};
+    }
+    
+    /**
+     * Method to check the class column in the training data (a nominal column is selected if none is set)
+     * @param inputSpec - the specification of the training data
+     * @param m_class - the setting of the class column of the node
+     * @throws InvalidSettingsException if the training data contains no suitable class column
+     */
+    static void checkClassColumn(DataTableSpec inputSpec, SettingsModelString m_class) 
+    		throws InvalidSettingsException {
     	
     	 // check spec with selected column
     	DataColumnSpec columnSpec = inputSpec.getColumnSpec(m_class.getStringValue());
@@ -148,22 +208,34 @@ public class DecisionGraphNodeModel extends NodeModel {
     		}
     	}
     	
-    	
-    	
-    	// check if input data includes class column
-    	if(inputSpec.containsName(m_class.getStringValue())){
-    		
-    		// create output table specification
-    		DataTableSpec outputSpec = createOutputTableSpec(inputSpec);    	
-    		return new DataTableSpec[]{outputSpec};
-    	}
-    		    	
     	// throw exception of input data does not contain the specified class column
-    	else{
+    	if(!inputSpec.containsName(m_class.getStringValue())){
     		throw new InvalidSettingsException("Class column " + m_class.getStringValue() + " not found");    		
     	}	    	    	
     }
 
+    /**
+     * Method to check the types of the attribute columns in the training data. Only string columns are 
+     * split by their values and the values are saved with the model, other types (long, boolean, date, ...) 
+     * cannot be saved and are rejected.
+     * @param inputSpec - the specification of the training data
+     * @param classColumn - the class column (not checked)
+     * @throws InvalidSettingsException if an attribute column is neither a string, integer or double column
+     */
+    static void checkAttributeColumns(DataTableSpec inputSpec, String classColumn) 
+    		throws InvalidSettingsException {
+    	for(int i = 0; i < inputSpec.getNumColumns(); i++){
+    		DataColumnSpec columnSpec = inputSpec.getColumnSpec(i);
+    		if(columnSpec.getName().equals(classColumn)) continue;
+    		Class<?> cellClass = columnSpec.getType().getCellClass();
+    		if(cellClass != StringCell.class && cellClass != IntCell.class && cellClass != DoubleCell.class){
+    			throw new InvalidSettingsException("Column " + columnSpec.getName() + " has the unsupported type " 
+    					+ columnSpec.getType() + ", only string, integer and double columns can be used as attributes"
+    					+ " (remove the column, e.g., with a Column Filter node)");
+    		}
+    	}
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -171,10 +243,15 @@ public class DecisionGraphNodeModel extends NodeModel {
     protected void saveSettingsTo(final NodeSettingsWO settings) {
         m_class.saveSettingsTo(settings);
         m_alpha.saveSettingsTo(settings);
+        m_bins.saveSettingsTo(settings);
+        m_threads.saveSettingsTo(settings);
+        m_workers.saveSettingsTo(settings);
+        m_generatecode.saveSettingsTo(settings);
         m_joins.saveSettingsTo(settings); 
         m_prefjoins.saveSettingsTo(settings); 
         m_restrictjoinnodes.saveSettingsTo(settings);      
         m_maxjoinnodes.saveSettingsTo(settings);
+        m_joinsearch.saveSettingsTo(settings);
     }
 
     /**
@@ -185,10 +262,15 @@ public class DecisionGraphNodeModel extends NodeModel {
             throws InvalidSettingsException {                                  
         m_class.loadSettingsFrom(settings);
         m_alpha.loadSettingsFrom(settings);
+        m_bins.loadSettingsFrom(settings);
+        m_threads.loadSettingsFrom(settings);
+        m_workers.loadSettingsFrom(settings);
+        m_generatecode.loadSettingsFrom(settings);
         m_joins.loadSettingsFrom(settings);
         m_prefjoins.loadSettingsFrom(settings);
         m_restrictjoinnodes.loadSettingsFrom(settings);      
         m_maxjoinnodes.loadSettingsFrom(settings);
+        m_joinsearch.loadSettingsFrom(settings);
     }
 
     /**
@@ -199,10 +281,15 @@ public class DecisionGraphNodeModel extends NodeModel {
             throws InvalidSettingsException {
         m_class.validateSettings(settings);
         m_alpha.validateSettings(settings);
+        m_bins.validateSettings(settings);
+        m_threads.validateSettings(settings);
+        m_workers.validateSettings(settings);
+        m_generatecode.validateSettings(settings);
         m_joins.validateSettings(settings);
         m_prefjoins.validateSettings(settings);
         m_restrictjoinnodes.validateSettings(settings);      
         m_maxjoinnodes.validateSettings(settings);
+        m_joinsearch.validateSettings(settings);
         
     }
     
@@ -214,13 +301,10 @@ public class DecisionGraphNodeModel extends NodeModel {
             final ExecutionMonitor exec) throws IOException,
             CanceledExecutionException {
         
-        // TODO load internal data. 
-        // Everything handed to output ports is loaded automatically (data
-        // returned by the execute method, models loaded in loadModelContent,
-        // and user settings set through loadSettingsFrom - is all taken care 
-        // of). Load here only the other internals that need to be restored
-        // (e.g. data used by the views).
-
+        // load the model of the learned graph (if the node was executed)
+        File file = new File(internDir, MODEL_FILE);
+        if(!file.exists()) return;
+        m_model = DecisionGraphModel.read(file);
     }
     
     /**
@@ -231,40 +315,23 @@ public class DecisionGraphNodeModel extends NodeModel {
             final ExecutionMonitor exec) throws IOException,
             CanceledExecutionException {
        
-        // TODO save internal models. 
-        // Everything written to output ports is saved automatically (data
-        // returned by the execute method, models saved in the saveModelContent,
-        // and user settings saved through saveSettingsTo - is all taken care 
-        // of). Save here only the other internals that need to be preserved
-        // (e.g. data used by the views).
-
-    }
-    
-    private DataColumnSpec createOutputColumnSpec(DataTableSpec inSpec) {
-    	    	
-    	// creator for the predicted class column
-    	DataColumnSpecCreator colSpecCreator = new DataColumnSpecCreator("Prediction (" +  
-    			m_class.getStringValue() + ")", StringCell.TYPE);
-    	 
-    	// prediction column will get same domain as class column
-    	colSpecCreator.setDomain(inSpec.getColumnSpec(m_class.getStringValue()).getDomain());
-    	
-    	// create the specification for the new column
-    	DataColumnSpec newColumnSpec = colSpecCreator.createSpec();
-    	    	 
-    	return newColumnSpec;
+        // save the model of the learned graph
+        if(m_model == null) return;
+        OutputStream out = new FileOutputStream(new File(internDir, MODEL_FILE));
+        try{
+        	m_model.write(out);
+        }
+        finally{
+        	out.close();
+        }
     }
     
-    private DataTableSpec createOutputTableSpec(DataTableSpec inSpec) {
-    	    	   	
-    	// create the specification for the new column
-    	DataColumnSpec newColumnSpec = createOutputColumnSpec(inSpec);
-    	DataTableSpec newSpec = new DataTableSpec(newColumnSpec);
-    	
-    	// create the specification for the whole output data
-    	DataTableSpec outputSpec = new DataTableSpec(inSpec, newSpec);    	 
-    	return outputSpec;
+    /**
+     * Obtain the learned graph
+     * @return the model of the graph (null if the node was not executed)
+     */
+    public DecisionGraphModel getModel() {
+    	return m_model;
     }
     
 }
-
@@ -0,0 +1,86 @@
+package org.decisionGraph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.ZipEntry;
+
+import javax.swing.JComponent;
+
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.port.AbstractPortObject;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.port.PortObjectZipInputStream;
+import org.knime.core.node.port.PortObjectZipOutputStream;
+import org.knime.core.node.port.PortType;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * Port object of a learned decision graph (output of the learner, input of the predictor).
+ * The model is saved in the binary format of DecisionGraphModel.
+ */
+public class DecisionGraphPortObject extends AbstractPortObject {
+	
+	public static final PortType TYPE = new PortType(DecisionGraphPortObject.class);
+	
+	private static final String MODEL_ENTRY = "model.dgm";
+	
+	private DecisionGraphPortObjectSpec spec;
+	private DecisionGraphModel model;
+	
+	/**
+	 * Constructor used to load a saved port object
+	 */
+	public DecisionGraphPortObject(){
+	}
+	
+	/**
+	 * Constructor
+	 * @param spec - the specification of the port
+	 * @param model - the learned graph
+	 */
+	public DecisionGraphPortObject(DecisionGraphPortObjectSpec spec, DecisionGraphModel model){
+		this.spec = spec;
+		this.model = model;
+	}
+
+	@Override
+	public DecisionGraphPortObjectSpec getSpec() {
+		return this.spec;
+	}
+
+	@Override
+	public String getSummary() {
+		return "Decision graph with " + this.model.getNumNodes() + " nodes";
+	}
+
+	@Override
+	public JComponent[] getViews() {
+		return new JComponent[0];
+	}
+
+	@Override
+	protected void save(PortObjectZipOutputStream out, ExecutionMonitor exec)
+			throws IOException, CanceledExecutionException {
+		out.putNextEntry(new ZipEntry(MODEL_ENTRY));
+		this.model.write(out);
+		out.closeEntry();
+	}
+
+	@Override
+	protected void load(PortObjectZipInputStream in, PortObjectSpec spec, ExecutionMonitor exec)
+			throws IOException, CanceledExecutionException {
+		this.spec = (DecisionGraphPortObjectSpec) spec;
+		
+		// read the entry of the zip file into a buffer
+		ZipEntry entry = in.getNextEntry();
+		if(entry == null || !entry.getName().equals(MODEL_ENTRY)) throw new IOException("No decision graph model");
+		this.model = DecisionGraphModel.read(ByteBuffer.wrap(ByteStreams.toByteArray(in)));
+	}
+	
+	public DecisionGraphModel getModel(){
+		return this.model;
+	}
+	
+}
@@ -0,0 +1,52 @@
+package org.decisionGraph;
+
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.ModelContentRO;
+import org.knime.core.node.ModelContentWO;
+import org.knime.core.node.port.AbstractSimplePortObjectSpec;
+
+/**
+ * Specification of the decision graph model port: the class column and the attributes used for learning
+ */
+public class DecisionGraphPortObjectSpec extends AbstractSimplePortObjectSpec {
+	
+	private String classColumn; // the name of the class column
+	private String[] attributes; // the names of the attributes used for learning
+	
+	/**
+	 * Constructor used to load a saved specification
+	 */
+	public DecisionGraphPortObjectSpec(){
+	}
+	
+	/**
+	 * Constructor
+	 * @param classColumn - the name of the class column
+	 * @param attributes - the names of the attributes used for learning
+	 */
+	public DecisionGraphPortObjectSpec(String classColumn, String[] attributes){
+		this.classColumn = classColumn;
+		this.attributes = attributes;
+	}
+	
+	@Override
+	protected void save(ModelContentWO model) {
+		model.addString("classColumn", this.classColumn);
+		model.addStringArray("attributes", this.attributes);
+	}
+
+	@Override
+	protected void load(ModelContentRO model) throws InvalidSettingsException {
+		this.classColumn = model.getString("classColumn");
+		this.attributes = model.getStringArray("attributes");
+	}
+	
+	public String getClassColumn(){
+		return this.classColumn;
+	}
+	
+	public String[] getAttributes(){
+		return this.attributes;
+	}
+	
+}
@@ -0,0 +1,24 @@
+package org.decisionGraph;
+
+import org.knime.core.data.DataRow;
+
+/**
+ * Model of a learned decision graph used to classify the records of a table 
+ * (see CompiledDecisionGraph and DecisionGraphClassGenerator)
+ */
+public interface DecisionGraphPredictor {
+	
+	/**
+	 * Method to classify a data record (must be safe to call from several threads)
+	 * @param row - the data record that should be classified
+	 * @return the code of the predicted class value (index into getClassLabels())
+	 */
+	public int classifyCode(DataRow row);
+	
+	/**
+	 * Obtain the class values 
+	 * @return the class values (by code)
+	 */
+	public String[] getClassLabels();
+	
+}
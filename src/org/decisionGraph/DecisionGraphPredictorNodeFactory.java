@@ -0,0 +1,58 @@
+package org.decisionGraph;
+
+import org.knime.core.node.NodeDialogPane;
+import org.knime.core.node.NodeFactory;
+import org.knime.core.node.NodeView;
+
+/**
+ * <code>NodeFactory</code> for the "DecisionGraph Predictor" Node.
+ * 
+ *
+ * @author Tobias Witt
+ */
+public class DecisionGraphPredictorNodeFactory 
+        extends NodeFactory<DecisionGraphPredictorNodeModel> {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DecisionGraphPredictorNodeModel createNodeModel() {
+        return new DecisionGraphPredictorNodeModel();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNrNodeViews() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NodeView<DecisionGraphPredictorNodeModel> createNodeView(final int viewIndex,
+            final DecisionGraphPredictorNodeModel nodeModel) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasDialog() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NodeDialogPane createNodeDialogPane() {
+        return new DecisionGraphNodeDialog(false, true);
+    }
+
+}
+
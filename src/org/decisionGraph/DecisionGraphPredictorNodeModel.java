@@ -0,0 +1,209 @@
+package org.decisionGraph;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataColumnSpecCreator;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.container.CellFactory;
+import org.knime.core.data.container.ColumnRearranger;
+import org.knime.core.data.def.StringCell;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeModel;
+import org.knime.core.node.NodeSettingsRO;
+import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
+import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
+import org.knime.core.node.port.PortObject;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.port.PortType;
+
+/**
+ * Node model of the decision graph predictor. The graph learned by the learner node is used to classify
+ * the records of the input table. The settings are the prediction settings of the combined node
+ * (see DecisionGraphNodeModel).
+ */
+public class DecisionGraphPredictorNodeModel extends NodeModel {
+	
+	// warning of the node if the graph could not be compiled to a Java class
+	static final String GENERATE_CODE_WARNING = 
+			"The decision graph could not be compiled to a Java class (see the log), the graph is interpreted instead.";
+	
+	// the settings of this node (see DecisionGraphNodeModel)
+	private final SettingsModelIntegerBounded m_workers = DecisionGraphNodeModel.createWorkersModel();
+	private final SettingsModelBoolean m_generatecode = DecisionGraphNodeModel.createGenerateCodeModel();
+
+    /**
+     * Constructor for the node model with two input ports
+     * (1) decision graph model
+     * (2) data for class prediction
+     */
+    protected DecisionGraphPredictorNodeModel() {
+        super(new PortType[]{DecisionGraphPortObject.TYPE, BufferedDataTable.TYPE},
+        		new PortType[]{BufferedDataTable.TYPE});
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected PortObject[] execute(final PortObject[] inObjects,
+            final ExecutionContext exec) throws Exception {
+    	DecisionGraphModel model = ((DecisionGraphPortObject) inObjects[0]).getModel();
+    	BufferedDataTable testData = (BufferedDataTable) inObjects[1];
+    	
+    	// create the model used for the prediction (compiled to a Java class if selected)
+    	boolean generateCode = m_generatecode.getBooleanValue();
+    	DecisionGraphPredictor predictor = createPredictor(model, testData.getDataTableSpec(), generateCode);
+    	if(generateCode && predictor instanceof CompiledDecisionGraph) setWarningMessage(GENERATE_CODE_WARNING);
+    	
+    	return new PortObject[]{predict(predictor, model.getClassColumn(), testData, 
+    			m_workers.getIntValue(), exec)};
+    }
+    
+    /**
+     * Method to create the model used to classify the records of a table
+     * @param model - the learned graph
+     * @param spec - the specification of the table to classify
+     * @param generateCode - if true, the graph is compiled to a Java class
+     * @return the generated class, or the compiled graph if no class should or could be generated (the reason
+     * is logged by DecisionGraphClassGenerator, the node should set GENERATE_CODE_WARNING in this case)
+     * @throws InvalidSettingsException if the table does not contain a split attribute of the graph
+     */
+    static DecisionGraphPredictor createPredictor(DecisionGraphModel model, DataTableSpec spec, boolean generateCode) 
+    		throws InvalidSettingsException {
+    	CompiledDecisionGraph compiled = model.compile(spec);
+    	if(generateCode){
+    		DecisionGraphPredictor generated = DecisionGraphClassGenerator.generate(compiled);
+    		if(generated != null) return generated;
+    	}
+    	return compiled;
+    }
+
+    /**
+     * Method to append the predicted classes to a table
+     * @param predictor - the model used for the prediction (see createPredictor())
+     * @param classColumn - the class column of the learned graph
+     * @param testData - the data for class prediction
+     * @param workers - the number of threads used for the prediction
+     * @param exec - the execution context
+     * @return the table with the prediction column
+     * @throws CanceledExecutionException if the execution is canceled
+     */
+    static BufferedDataTable predict(DecisionGraphPredictor predictor, String classColumn, 
+    		BufferedDataTable testData, int workers, ExecutionContext exec) throws CanceledExecutionException {
+
+        CellFactory cellFactory = new DecisionGraphCellFactory(
+        		createOutputColumnSpec(classColumn, testData.getDataTableSpec()), predictor, workers);
+
+        // create the column re-arranger
+        ColumnRearranger outputTable = new ColumnRearranger(testData.getDataTableSpec());
+
+        // append the new column
+        outputTable.append(cellFactory);
+
+        // create the actual output table
+        return exec.createColumnRearrangeTable(testData, outputTable, exec);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void reset() {
+    	// nothing to do
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected PortObjectSpec[] configure(final PortObjectSpec[] inSpecs)
+            throws InvalidSettingsException {
+    	DecisionGraphPortObjectSpec modelSpec = (DecisionGraphPortObjectSpec) inSpecs[0];
+    	DataTableSpec inputSpec = (DataTableSpec) inSpecs[1];
+    	return new PortObjectSpec[]{createOutputTableSpec(modelSpec.getClassColumn(), inputSpec)};
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void saveSettingsTo(final NodeSettingsWO settings) {
+        m_workers.saveSettingsTo(settings);
+        m_generatecode.saveSettingsTo(settings);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void loadValidatedSettingsFrom(final NodeSettingsRO settings)
+            throws InvalidSettingsException {
+        m_workers.loadSettingsFrom(settings);
+        m_generatecode.loadSettingsFrom(settings);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void validateSettings(final NodeSettingsRO settings)
+            throws InvalidSettingsException {
+        m_workers.validateSettings(settings);
+        m_generatecode.validateSettings(settings);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void loadInternals(final File internDir,
+            final ExecutionMonitor exec) throws IOException,
+            CanceledExecutionException {
+    	// no internals
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void saveInternals(final File internDir,
+            final ExecutionMonitor exec) throws IOException,
+            CanceledExecutionException {
+    	// no internals
+    }
+
+    static DataColumnSpec createOutputColumnSpec(String classColumn, DataTableSpec inSpec) {
+
+    	// creator for the predicted class column
+    	DataColumnSpecCreator colSpecCreator = new DataColumnSpecCreator("Prediction (" +
+    			classColumn + ")", StringCell.TYPE);
+
+    	// prediction column will get same domain as class column (if the input data includes it)
+    	DataColumnSpec classSpec = inSpec.getColumnSpec(classColumn);
+    	if(classSpec != null) colSpecCreator.setDomain(classSpec.getDomain());
+
+    	// create the specification for the new column
+    	DataColumnSpec newColumnSpec = colSpecCreator.createSpec();
+
+    	return newColumnSpec;
+    }
+
+    static DataTableSpec createOutputTableSpec(String classColumn, DataTableSpec inSpec) {
+
+    	// create the specification for the new column
+    	DataColumnSpec newColumnSpec = createOutputColumnSpec(classColumn, inSpec);
+    	DataTableSpec newSpec = new DataTableSpec(newColumnSpec);
+
+    	// create the specification for the whole output data
+    	DataTableSpec outputSpec = new DataTableSpec(inSpec, newSpec);
+    	return outputSpec;
+    }
+
+}
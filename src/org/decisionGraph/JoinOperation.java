@@ -6,6 +6,8 @@ public class JoinOperation extends Operation{
 	
 	private ArrayList<TreeNode> nodes;
 	private TreeNode joinedNode;
+	private long testedJoins; // number of joins tested in the search for this join
+	private long prunedJoins; // number of joins skipped in the search because they could not produce larger savings
 	
 	/**
 	 * Constructor
@@ -29,23 +31,29 @@ public class JoinOperation extends Operation{
 	}
 	
 	@Override
-	public void updateLeaves(ArrayList<TreeNode> leaves){
-		leaves.removeAll(this.nodes);
-		leaves.add(this.joinedNode);
+	public void updateLeaves(DecisionGraph graph){
+		for(TreeNode v : this.nodes) graph.removeLeaf(v);
+		graph.addLeaf(this.joinedNode);
+	}
+	
+	@Override
+	public void markDirty(){
+		for(TreeNode v : this.nodes) v.markDirty();
 	}
 	
 	@Override
 	public void getInfo(){ 
 		System.out.println("Performing a Join of " + this.nodes.size() + " nodes");
 		System.out.println("Savings are " + Math.round(this.savings) + " bits (rounded)");
+		System.out.println("Joins tested: " + this.testedJoins + " | joins pruned: " + this.prunedJoins);
 		System.out.println("Involved nodes: ");
 		for(TreeNode v : this.nodes){
 			System.out.print(v.getParent().getSplitAttribute() + " = " + v.getParentSplitValue());
-			System.out.print(" | nr. of instances: " + v.getClassVec().size());
-			System.out.println(" | class frequencies " + v.getClassFreq());
+			System.out.print(" | nr. of instances: " + v.getSize());
+			System.out.println(" | class frequencies " + v.getClassFreqMap());
 		}
-		System.out.print("New (joined) node: " + this.joinedNode.getClassVec().size() + " instances");
-		System.out.println(" | class frequencies " + this.joinedNode.getClassFreq());	
+		System.out.print("New (joined) node: " + this.joinedNode.getSize() + " instances");
+		System.out.println(" | class frequencies " + this.joinedNode.getClassFreqMap());	
 	}
 	
 	/**
@@ -89,4 +97,17 @@ public class JoinOperation extends Operation{
 		return this.joinedNode;
 	}
 	
+	public void setSearchStatistics(long testedJoins, long prunedJoins){
+		this.testedJoins = testedJoins;
+		this.prunedJoins = prunedJoins;
+	}
+	
+	public long getTestedJoins(){
+		return this.testedJoins;
+	}
+	
+	public long getPrunedJoins(){
+		return this.prunedJoins;
+	}
+	
 }
@@ -0,0 +1,109 @@
+package org.decisionGraph;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Memo of the savings in message length of joins which were tested before. The savings of a join only 
+ * depend on the joined leaves, so they are kept across the iterations of the learning algorithm until one 
+ * of the leaves is split or joined (i.e., until it is no leaf anymore).
+ * Only joins with positive savings are kept (the others are never performed and are cheap to score from 
+ * the class frequencies again), and the number of kept joins is limited.
+ */
+public class JoinSavingsMemo {
+	
+	// maximum number of joins kept in a memo (further joins are not saved)
+	private static final int MAX_JOINS = 100000;
+	
+	private HashMap<Set<TreeNode>, Double> savings; // the savings of the tested joins (key: set of joined nodes)
+	private HashMap<TreeNode, ArrayList<Set<TreeNode>>> joinsByNode; // the tested joins each node is involved in
+	private JoinSavingsMemo parent; // memo which is looked up as well but not modified (null if none)
+	
+	/**
+	 * Constructor
+	 */
+	public JoinSavingsMemo(){
+		this(null);
+	}
+	
+	/**
+	 * Constructor for a memo used by a single task of the join search. The savings are also looked up in the 
+	 * parent memo, which must not be modified while the task is running. 
+	 * @param parent - the memo of the graph
+	 */
+	public JoinSavingsMemo(JoinSavingsMemo parent){
+		this.savings = new HashMap<Set<TreeNode>, Double>();
+		this.joinsByNode = new HashMap<TreeNode, ArrayList<Set<TreeNode>>>();
+		this.parent = parent;
+	}
+	
+	/**
+	 * Obtain the savings of a join
+	 * @param nodes - the nodes involved in the join
+	 * @return the savings (null if the join was not tested before)
+	 */
+	public Double get(Collection<TreeNode> nodes){
+		if(this.savings.isEmpty() && (this.parent == null || this.parent.savings.isEmpty())) return null;
+		Set<TreeNode> key = new HashSet<TreeNode>(nodes);
+		Double savings = this.savings.get(key);
+		if(savings == null && this.parent != null) savings = this.parent.savings.get(key);
+		return savings;
+	}
+	
+	/**
+	 * Save the savings of a join (only if they are positive and the memo is not full)
+	 * @param nodes - the nodes involved in the join
+	 * @param savings - the savings of the join
+	 */
+	public void put(Collection<TreeNode> nodes, double savings){
+		if(savings <= 0 || this.savings.size() >= MAX_JOINS) return;
+		Set<TreeNode> key = new HashSet<TreeNode>(nodes);
+		if(this.savings.put(key, savings) != null) return;
+		for(TreeNode v : key){
+			ArrayList<Set<TreeNode>> joins = this.joinsByNode.get(v);
+			if(joins == null){
+				joins = new ArrayList<Set<TreeNode>>();
+				this.joinsByNode.put(v, joins);
+			}
+			joins.add(key);
+		}
+	}
+	
+	/**
+	 * Save the savings of all joins of another memo (e.g., the joins tested by a task)
+	 * @param memo - the other memo
+	 */
+	public void putAll(JoinSavingsMemo memo){
+		for(Set<TreeNode> key : memo.savings.keySet()){
+			this.put(key, memo.savings.get(key));
+		}
+	}
+	
+	/**
+	 * Remove the savings of all joins a node is involved in (called when the node is no leaf anymore). 
+	 * The joins are also removed from the lists of the other nodes involved, so no removed join (and no 
+	 * node which is no leaf anymore) is referenced by the memo.
+	 * @param node - the node 
+	 */
+	public void invalidate(TreeNode node){
+		ArrayList<Set<TreeNode>> joins = this.joinsByNode.remove(node);
+		if(joins == null) return;
+		for(Set<TreeNode> key : joins){
+			this.savings.remove(key);
+			for(TreeNode other : key){
+				ArrayList<Set<TreeNode>> otherJoins = this.joinsByNode.get(other);
+				if(otherJoins == null) continue;
+				otherJoins.remove(key);
+				if(otherJoins.isEmpty()) this.joinsByNode.remove(other);
+			}
+		}
+	}
+	
+	public int size(){
+		return this.savings.size();
+	}
+	
+}
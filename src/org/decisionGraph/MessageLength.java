@@ -1,22 +1,32 @@
 package org.decisionGraph;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
 
-import org.knime.core.data.DataCell;
-
 import com.google.common.collect.Sets;
-import com.google.common.math.IntMath;
 
 public class MessageLength {
 		
+	// coefficients of the Lanczos approximation of the gamma function (g = 7, n = 9)
+	private static final double[] LANCZOS = {0.99999999999980993, 676.5203681218851, -1259.1392167224028, 
+		771.32342877765313, -176.61502916214059, 12.507343278686905, -0.13857109526572012, 
+		9.9843695780195716e-6, 1.5056327351493116e-7};
+	
+	// 1 / log(2), to convert natural logarithms to bits 
+	private static final double INV_LOG2 = 1 / Math.log(2);
+		
 	private final double alpha; 
 	private final double C;
 	private Set<TreeNode> treeRootSet;
 	private JoinNodeList joinList;
 	
+	// lookup tables, computed once when the object is created
+	private final double[] log2Table; // log2(k)
+	private final double[] log2FactorialTable; // log2(k!)
+	private final double[] logGammaAlphaTable; // log2(Gamma(k + alpha) / Gamma(alpha)) 
+	private final double[] logGammaCAlphaTable; // log2(Gamma(k + C*alpha) / Gamma(C*alpha)) 
+	
 	/**
 	 * Constructor 
 	 * @param alpha - parameter of the Beta prior distribution over the unknown class probabilities
@@ -25,8 +35,38 @@ public class MessageLength {
 	 * where C is the number of distinct class values	 
 	 */
 	public MessageLength(double alpha, double C){
+		this(alpha, C, 0, 0);
+	}
+	
+	/**
+	 * Constructor
+	 * Creates lookup tables for the logarithms needed to calculate message lengths (arguments exceeding the
+	 * size of the tables are calculated directly).  
+	 * @param alpha - parameter of the Beta prior distribution over the unknown class probabilities
+	 * @param C - the number of distinct class values
+	 * @param nrow - the number of instances in the training data (size of the tables for the category messages)
+	 * @param maxJoinNodes - the maximum number of nodes involved in a join (size of the table for factorials)
+	 */
+	public MessageLength(double alpha, double C, int nrow, int maxJoinNodes){
 		this.alpha = alpha;
 		this.C = C;		
+		
+		// log2(k) and log2(k!)
+		this.log2Table = new double[nrow + 1];
+		this.log2Table[0] = Double.NEGATIVE_INFINITY;
+		for(int k = 1; k <= nrow; k++) this.log2Table[k] = Math.log(k) * INV_LOG2;
+		this.log2FactorialTable = new double[Math.min(nrow, maxJoinNodes) + 1];
+		for(int k = 1; k < this.log2FactorialTable.length; k++){
+			this.log2FactorialTable[k] = this.log2FactorialTable[k - 1] + this.log2Table[k];
+		}
+		
+		// log2(Gamma(k + a) / Gamma(a)) = sum_{i < k} log2(i + a) for a = alpha and a = C*alpha
+		this.logGammaAlphaTable = new double[nrow + 1];
+		this.logGammaCAlphaTable = new double[nrow + 1];
+		for(int k = 1; k <= nrow; k++){
+			this.logGammaAlphaTable[k] = this.logGammaAlphaTable[k - 1] + Math.log(k - 1 + alpha) * INV_LOG2;
+			this.logGammaCAlphaTable[k] = this.logGammaCAlphaTable[k - 1] + Math.log(k - 1 + C * alpha) * INV_LOG2;
+		}
 	}
 	
 	/**
@@ -55,10 +95,15 @@ public class MessageLength {
 			// tell the list that a new iteration starts
 			this.joinList.newIteration();			
 			
-			// add the bits needed to communicate all subtrees
+			// add the bits needed to communicate all subtrees (join nodes are added to the list and 
+			// their children to the set of new roots)
 			Set<TreeNode> tested = Sets.newHashSet(this.treeRootSet);
 			for(TreeNode v: tested){			
-				ml += treeLength(v);			
+				ml += treeLength(v);	
+				for(TreeNode joinNode : v.getSubtreeJoinNodes()){
+					this.joinList.add(joinNode);
+					this.treeRootSet.add(joinNode.getChildren().get(0));
+				}
 			}
 			this.treeRootSet.removeAll(tested);
 			
@@ -70,10 +115,7 @@ public class MessageLength {
 				
 				// add bits needed to transmit join pattern 
 				if(joinList.getNewNodes().size() > 1){
-					System.out.println("ml = " + ml);
-					System.out.println("add join pattern length");					
 					ml += encodeJoinPattern();				
-					System.out.println("ml = " + ml);
 				}
 			}			
 			nroots = this.treeRootSet.size();
@@ -84,38 +126,20 @@ public class MessageLength {
 	/**
 	 * Method to recursively calculate the number of bits needed to transmit a tree within the graph. 
 	 * For this purpose, any potential join nodes in the graph are treated as leaf nodes.
+	 * The length and the join nodes of the subtree are cached in the node and reused until the node is 
+	 * marked as dirty (see TreeNode.markDirty()), so only subtrees touched by an operation are traversed.
 	 * @param node - the root of the subtree.
 	 * @return the number of bits needed to transmit the tree (a.k.a. message length)
 	 */
 	protected double treeLength(TreeNode node){
 		
+		// use the cached length if the subtree did not change
+		if(node.hasTreeLength()) return node.getTreeLength();
+		
 		// initialize variables
 		double ml = 0.0; // message length
-		double p; // probability that node is no leaf.
-		
-		/*
-		 * Check out the parent of the node to distinguish two cases:
-		 * (1) Node is the root of a subtree (i.e. actual root or node resulting from join)
-		 * (2) Node is no root of a subtree
-		 */
-		TreeNode u = node.getParent();		
-	
-		// Case (1) 
-		if(u == null|| u.isJoin()){		
-			
-			// probability that the root is NOT a leaf is 1 - (1/(number of attributes))			
-			p = 1 - (1/(double) node.getRemainingAttributes().size());
-		}
-		
-		// Case (2)
-		else{
-			
-			// obtain the number of children of the parent node
-			double b = (double) u.getChildren().size();	
-			
-			// probability that the node is NOT a leaf is	
-			p = 1/b;			
-		}
+		double p = innerNodeProbability(node); // probability that node is no leaf.
+		ArrayList<TreeNode> joinNodes = new ArrayList<TreeNode>(); // join nodes in the subtree
 				
 		/*
 		 * Distinguish three cases to calculate the bits needed to transmit the node
@@ -142,12 +166,8 @@ public class MessageLength {
 			// add bits needed in the structure message
 			//if(p != 0) ml += (Math.log(1/(1 - p)) / Math.log(2));	
 			
-			// add join node to open list		
-			this.joinList.add(node);			
-			
-			// add child of join node to set of new roots
-			this.treeRootSet.add(node.getChildren().get(0));
-			
+			// remember the join node (its child is the root of a new tree) 		
+			joinNodes.add(node);
 		}
 		
 		// Case (3)
@@ -158,48 +178,119 @@ public class MessageLength {
 			// recurse over all subtrees
 			for(TreeNode v: node.getChildren()){				
 				ml += treeLength(v);
+				joinNodes.addAll(v.getSubtreeJoinNodes());
 			}
 		}	
 		
+		// cache the length of the subtree
+		node.setTreeLength(ml, joinNodes);
+		
 		return ml;
 	}	
 	
+	/**
+	 * Method to calculate the number of bits needed to transmit the subtree of a leaf node if the node 
+	 * was split, without performing the split (the graph is not modified). The children are encoded as 
+	 * leaves from their class frequencies.
+	 * @param node - the leaf node that should be split
+	 * @param childFreq - the class frequencies of the children (one array per child)
+	 * @return the number of bits needed to transmit the split node and its children
+	 */
+	protected double splitLength(TreeNode node, int[][] childFreq){
+		
+		// add bits needed to encode the node as inner node
+		double ml = encodeInnerNode(node, innerNodeProbability(node));
+		
+		// add bits needed to encode the children as leaves (probability that a child is NOT a leaf is 1/b)
+		double p = 1/(double) childFreq.length;
+		for(int[] freq : childFreq){
+			ml += encodeLeafNode(freq, p);
+		}
+		return ml;
+	}
+	
+	/**
+	 * Method to calculate the number of bits needed to transmit the node resulting from a join of leaves, 
+	 * without performing the join (the graph is not modified). The joined node is encoded as a leaf from the 
+	 * sum of the class frequencies of the leaves. As the node is the root of a new tree, the probability that 
+	 * it is NOT a leaf depends on the number of attributes remaining in all leaves.
+	 * @param nodes - the leaves that are joined
+	 * @return the number of bits needed to transmit the joined node
+	 */
+	protected double joinLength(List<TreeNode> nodes){
+		
+		// sum up the class frequencies of the leaves (the frequencies of the data, empty leaves add nothing)
+		int[] classFreq = new int[nodes.get(0).getRemainingData().getClassFreq().length];
+		for(TreeNode v : nodes){
+			int[] freq = v.getRemainingData().getClassFreq();
+			for(int c = 0; c < classFreq.length; c++) classFreq[c] += freq[c];
+		}
+		
+		// count the attributes remaining in all leaves
+		Set<String> smallest = nodes.get(0).getRemainingAttributes();
+		for(TreeNode v : nodes){
+			if(v.getRemainingAttributes().size() < smallest.size()) smallest = v.getRemainingAttributes();
+		}
+		int nattr = 0;
+		for(String attribute : smallest){
+			boolean common = true;
+			for(TreeNode v : nodes){
+				if(!v.getRemainingAttributes().contains(attribute)){
+					common = false;
+					break;
+				}
+			}
+			if(common) nattr++;
+		}
+		
+		// probability that the root is NOT a leaf is 1 - (1/(number of attributes))			
+		double p = (nattr == 0) ? 0.0 : 1 - (1/(double) nattr);
+		
+		return encodeLeafNode(classFreq, p);
+	}
+	
+	/**
+	 * Method to obtain the probability that a node is NOT a leaf.
+	 * @param node - the node
+	 * @return the probability that the node is NOT a leaf
+	 */
+	private double innerNodeProbability(TreeNode node){
+		
+		/*
+		 * Check out the parent of the node to distinguish two cases:
+		 * (1) Node is the root of a subtree (i.e. actual root or node resulting from join)
+		 * (2) Node is no root of a subtree
+		 */
+		TreeNode u = node.getParent();		
+	
+		// Case (1) 
+		if(u == null|| u.isJoin()){		
+			
+			// probability that the root is NOT a leaf is 1 - (1/(number of attributes))			
+			// (if no attributes are left, the root must be a leaf)
+			int nattr = node.getRemainingAttributes().size();
+			if(nattr == 0) return 0.0;
+			return 1 - (1/(double) nattr);
+		}
+		
+		// Case (2): the probability that the node is NOT a leaf is 1/(number of children of the parent)
+		return 1/(double) u.getChildren().size();
+	}
+	
 	/**
 	 * Method to calculate the number of bits needed to announce a "theory" about the distribution 
 	 * of classes within a category (i.e., within a leaf node).
-	 * To encode the message an incremental code is used (see Wallace & Patrick 1993)
+	 * To encode the message an incremental code is used (see Wallace & Patrick 1993), its length
+	 * is calculated from the class frequencies in the leaf (see encodeCategory(int[])).
 	 * @param leaf - the leaf that should be encoded	
 	 * @return the length of the encoded message
 	 */
 	public double encodeCategory(TreeNode leaf){
 		
-		// initialize message length
-		double ml = 0.0;
-				
-		// create map to save the frequency of each class value 
-		Map<DataCell, Integer> classFreq = new HashMap<DataCell, Integer>();	
+		// no instances are left in the node (the class frequencies are those of the parent)
+		if(leaf.isEmpty()) return 0.0;
 		
-		// loop over all elements in the class vector to encode the category
-		int j = 0;
-		for(DataCell c : leaf.getClassVec()){	
-			
-			// create entry for class value
-			if(!classFreq.containsKey(c)){
-				classFreq.put(c, 0);
-			}
-			
-			// the count i_m (number of elements with class m, so far)
-			double i = (double) classFreq.get(c);
-			
-			// calculate q (the expectation of the updated probability that instance j belongs to class m)
-			double q = (i + this.alpha) / (j + (this.C * this.alpha));					
-			if(q != 0) ml += (Math.log(1/q)) / (Math.log(2));
-			
-			// update frequency map
-			classFreq.put(c, classFreq.get(c) + 1);		
-			j++;
-		} 				
-		return ml;
+		return encodeCategory(leaf.getClassFreq());
 	}
 		
 	/**
@@ -210,11 +301,25 @@ public class MessageLength {
 	 */
 	public double encodeLeafNode(TreeNode leaf, double p){
 		
+		// no instances are left in the node (the class frequencies are those of the parent)
+		if(leaf.isEmpty()) return encodeLeafNode(new int[0], p);
+		
+		return encodeLeafNode(leaf.getClassFreq(), p);
+	}
+	
+	/**
+	 * Method to calculate the bits needed to communicate a leaf node from its class frequencies.
+	 * @param classFreq - the class frequencies in the leaf
+	 * @param p - the probability that the node is NOT a leaf
+	 * @return the length of the encoded message
+	 */
+	private double encodeLeafNode(int[] classFreq, double p){
+		
 		// add bits needed to express distribution of classes within leaf (category)
-		double ml = encodeCategory(leaf);	
+		double ml = encodeCategory(classFreq);	
 		
 		// add bits to encode leaf node in tree structure message
-		if(p != 0) ml += (Math.log(1/(1 - p)) / Math.log(2));	
+		if(p != 0) ml -= log2(1 - p);	
 				
 		return ml;
 	}
@@ -231,13 +336,13 @@ public class MessageLength {
 		double ml = 0.0;
 		
 		// obtain the number of remaining attributes in this node
-		double nattr = (double) node.getRemainingAttributes().size();
+		int nattr = node.getRemainingAttributes().size();
 		
 		// add bits needed to encode inner node in the structure message
-		if(p != 0) ml += (Math.log(1/p) / Math.log(2));			
+		if(p != 0) ml -= log2(p);			
 			
 		// add bits needed to encode the name of the splitting attribute			
-		if(nattr> 0) ml += (Math.log(nattr) / Math.log(2));			
+		if(nattr> 0) ml += log2(nattr);			
 		
 		return ml;
 	}
@@ -245,38 +350,96 @@ public class MessageLength {
 	/**
 	 * Method to calculate the number of bits needed to announce a "theory" about the distribution 
 	 * of classes within a subset of the data.
-	 * To encode the message an incremental code is used (see Wallace & Patrick 1993)
+	 * To encode the message an incremental code is used (see Wallace & Patrick 1993), its length
+	 * is calculated from the class frequencies in the subset (see encodeCategory(int[])).
 	 * @param data - the subset
 	 * @return the length of the encoded message
 	 */
 	protected double encodeSubset(Data data){
-		
-		// initialize variables
-		double length = 0.0;				
-		
-		// create map to save the frequency of each class value 
-		Map<DataCell, Integer> classFreq = new HashMap<DataCell, Integer>();	
-		
-		// loop over all elements in the class vector to encode the category
-		int j = 0;
-		for(DataCell c : data.getClassVec()){	
-			
-			// create entry for class value
-			if(!classFreq.containsKey(c)){
-				classFreq.put(c, 0);
-			}
-			
-			// the count i_m (number of elements with class m, so far)
-			double i = (double) classFreq.get(c);
-			
-			// calculate q (the expectation of the updated probability that instance j belongs to class m)
-			double q = (i + this.alpha) / (j + (this.C * this.alpha));					
-			if(q != 0) length += (Math.log(1/q)) / (Math.log(2));
-			classFreq.put(c, classFreq.get(c) + 1);		
-			j++;
-		} 
-		
-		return length;
+		return encodeCategory(data.getClassFreq());
+	}
+	
+	/**
+	 * Method to calculate the number of bits needed to announce a "theory" about the distribution 
+	 * of classes within a category from the class frequencies. 
+	 * With the incremental code, the instances are encoded one after the other and the j-th instance, 
+	 * belonging to class m, costs -log(q) bits with q = (i_m + alpha) / (j + C*alpha), where i_m is the 
+	 * number of previous instances of class m. The product of the q's does not depend on the order of the 
+	 * instances, so the length is log(Gamma(N + C*alpha)/Gamma(C*alpha)) - sum_m log(Gamma(n_m + alpha)/Gamma(alpha))
+	 * where n_m is the frequency of class m and N is the number of instances (computed in O(C)).
+	 * @param classFreq - the frequencies of the classes
+	 * @return the length of the encoded message
+	 */
+	protected double encodeCategory(int[] classFreq){
+		int N = 0;
+		double ml = 0.0;
+		for(int n : classFreq){
+			if(n == 0) continue;
+			ml -= (n < this.logGammaAlphaTable.length) ? this.logGammaAlphaTable[n] : 
+				(logGamma(n + this.alpha) - logGamma(this.alpha)) * INV_LOG2;
+			N += n;
+		}
+		if(N == 0) return 0.0;
+		ml += (N < this.logGammaCAlphaTable.length) ? this.logGammaCAlphaTable[N] : 
+			(logGamma(N + this.C * this.alpha) - logGamma(this.C * this.alpha)) * INV_LOG2;
+		return ml;
+	}
+	
+	/**
+	 * Method to calculate N times the empirical entropy of the class frequencies, i.e., 
+	 * sum_m n_m * log(N/n_m). This is a lower bound of encodeCategory(classFreq), because the probability
+	 * assigned to the instances by the incremental code is a mixture over the class probabilities and thus 
+	 * cannot exceed the maximum likelihood.
+	 * @param classFreq - the frequencies of the classes
+	 * @return the entropy of the class frequencies in bits
+	 */
+	protected double encodeEntropy(int[] classFreq){
+		int N = 0;
+		double ml = 0.0;
+		for(int n : classFreq){
+			if(n == 0) continue;
+			ml -= n * log2(n);
+			N += n;
+		}
+		if(N == 0) return 0.0;
+		return ml + N * log2(N);
+	}
+	
+	/**
+	 * Logarithm to the base 2 of an integer (from the lookup table if possible) 
+	 */
+	protected double log2(int k){
+		if(k < this.log2Table.length) return this.log2Table[k];
+		return Math.log(k) * INV_LOG2;
+	}
+	
+	/**
+	 * Logarithm to the base 2 of a number 
+	 */
+	protected static double log2(double x){
+		return Math.log(x) * INV_LOG2;
+	}
+	
+	/**
+	 * Logarithm to the base 2 of the factorial of an integer (from the lookup table if possible) 
+	 */
+	protected double log2Factorial(int k){
+		if(k < this.log2FactorialTable.length) return this.log2FactorialTable[k];
+		return logGamma(k + 1) * INV_LOG2;
+	}
+	
+	/**
+	 * Natural logarithm of the gamma function (Lanczos approximation) 
+	 * @param x - a positive number
+	 * @return log(Gamma(x))
+	 */
+	private static double logGamma(double x){
+		if(x < 0.5) return Math.log(Math.PI / Math.sin(Math.PI * x)) - logGamma(1 - x);
+		x -= 1;
+		double a = LANCZOS[0];
+		double t = x + 7.5;
+		for(int i = 1; i < LANCZOS.length; i++) a += LANCZOS[i] / (x + i);
+		return 0.5 * Math.log(2 * Math.PI) + (x + 0.5) * Math.log(t) - t + Math.log(a);
 	}
 	
 	/**
@@ -327,7 +490,7 @@ public class MessageLength {
 	// calculate the bits needed to transmit the number of nodes which are children of joins 
 	private double encodeJoinPattern1(int N, int Q){				
 		double invp = Math.min((double) N, ((double) N + (double) Q)/2 );
-		return (Math.log(invp) / Math.log(2));
+		return log2(invp);
 	}
 	
 	/*
@@ -343,12 +506,10 @@ public class MessageLength {
 		// shift the right-hand side of the equation to account for J_i >= 2
 		int rhs = N + Q - (2 * M);		
 		
-		// using stars and bars theorem to find number of possible solutions	
-		int solutions = IntMath.binomial(rhs + M, M);
-		
+		// using stars and bars theorem to find number of possible solutions, binomial(rhs + M, M)	
 		// assuming that each solution is a priori equally likely 
-		// the cost of transmitting is -log(1/solutions) = log(solutions)
-		return ( Math.log((double) solutions) / Math.log(2) );
+		// the cost of transmitting is -log(1/solutions) = log(solutions) (computed in log space)
+		return log2Factorial(rhs + M) - log2Factorial(M) - log2Factorial(rhs);
 	}
 	
 	
@@ -358,14 +519,15 @@ public class MessageLength {
 	 */
 	private double encodeJoinPattern3(int N, int Q, int Y, int P, int M, ArrayList<Integer> J, 			
 			ArrayList<Integer> X){	
-		double enumerator = IntMath.factorial(N) * IntMath.factorial(Q);
-		int denominator = IntMath.factorial(Y) * IntMath.factorial(P - Y); 
+		// log(N! * Q! / (Y! * (P - Y)! * X_1! * (J_1 - X_1)! * ... * X_M! * (J_M - X_M)!)) 
+		double enumerator = log2Factorial(N) + log2Factorial(Q);
+		double denominator = log2Factorial(Y) + log2Factorial(P - Y); 
 		for(int i = 0; i < M; i++){
 			int Xi = X.get(i); int Ji = J.get(i);
-			denominator *= IntMath.factorial(Xi);
-			denominator *= IntMath.factorial(Ji - Xi);
+			denominator += log2Factorial(Xi);
+			denominator += log2Factorial(Ji - Xi);
 		}
-		return ( Math.log(enumerator / denominator) / Math.log(2) );
+		return enumerator - denominator;
 	}
 
 }
@@ -1,7 +1,5 @@
 package org.decisionGraph;
 
-import java.util.ArrayList;
-
 /**
  * Abstract class for graph/tree operations. 
  * Extended by the SplitOperation and JoinOperation classes.
@@ -18,7 +16,10 @@ public abstract class Operation {
 	public abstract void reverse(); 
 	
 	// update the leaves of the graph after the operation was performed
-	public abstract void updateLeaves(ArrayList<TreeNode> leaves);
+	public abstract void updateLeaves(DecisionGraph graph);
+	
+	// mark the cached message lengths of the nodes touched by the operation as dirty 
+	public abstract void markDirty();
 	
 	// method to print information on the operation
 	public abstract void getInfo();
@@ -2,47 +2,114 @@ package org.decisionGraph;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.collect.Maps;
+import com.google.common.math.LongMath;
 
 public class SelectBestJoin {
+	
+	// tolerance for the comparison of the upper bound of the savings with the best savings (in bits)
+	private static final double BOUND_TOLERANCE = 1e-6;
 		
 	/**
 	 * Method to select the best join operation for the graph. 
+	 * The search is split into tasks which are executed in parallel: one task for each attribute of the 
+	 * savings map and, for the exhaustive search, one task for each first node of the combinations. 
+	 * The tasks share the best savings found so far (for pruning), but each task returns the first best join 
+	 * in its own enumeration order. The results are reduced in the order of the sequential search, so the 
+	 * selected join does not depend on the number of threads.
 	 * @param nodes - list of nodes that could be joined (i.e., the leaf nodes of the graph)
 	 * @param root - the root of the graph (needed to calculate message length savings)
 	 * @param currentML - the current message length for the graph
 	 * @param ml - object that provides methods to calculate the message length
 	 * @param maxJoinNodes - the maximum number of nodes involved in a join (set by user)
+	 * @param greedy - if true, the joins are searched greedily instead of testing all combinations
+	 * @param memo - the savings of the joins tested in previous iterations (or for other attributes)
+	 * @param pool - the pool of threads used to test the joins
 	 * @return the best join operation as measured by communication savings
 	 */
-	protected static JoinOperation select(ArrayList<TreeNode> nodes, TreeNode root, double currentML, 
-			MessageLength ml, int maxJoinNodes){
+	protected static JoinOperation select(Collection<TreeNode> nodes, TreeNode root, double currentML, 
+			MessageLength ml, int maxJoinNodes, boolean greedy, JoinSavingsMemo memo, ForkJoinPool pool){
 	
 		// initialize best join operation object
 		JoinOperation bestJoin = new JoinOperation(null, 0.0);		
 		
-		// initialize a set which saves all tested join combinations
-		Set<int[]> testedComb = new HashSet<int[]>();		
-		
 		// create a map which saves for each attribute the nodes with split savings on the attribute
 		HashMap<String, ArrayList<TreeNode>> savingsMap = createSavingsMap(nodes);		
+		
+		// compute the message lengths and class frequencies of the nodes before the tasks are started
+		// (both are cached in the nodes, the tasks only read them)
+		for(ArrayList<TreeNode> group : savingsMap.values()){
+			for(TreeNode v : group){
+				ml.treeLength(v);
+				v.getRemainingData().getClassFreq();
+			}
+		}
 				
-		// loop over entries of the savings map and test all join combinations to search for the best join
+		// start the search for the best join in each entry of the savings map 
+		// (each task records the joins it tests in its own memo, the shared memo is only read)
+		AtomicLong maxSavings = new AtomicLong(Double.doubleToLongBits(0.0));
+		List<List<ForkJoinTask<JoinOperation>>> tasks = new ArrayList<List<ForkJoinTask<JoinOperation>>>();
+		List<JoinSavingsMemo> taskMemos = new ArrayList<JoinSavingsMemo>();
 		for(String attribute : savingsMap.keySet()){
+			ArrayList<TreeNode> group = savingsMap.get(attribute);
+			List<ForkJoinTask<JoinOperation>> groupTasks = new ArrayList<ForkJoinTask<JoinOperation>>();
+			if(greedy){
+				JoinSavingsMemo taskMemo = new JoinSavingsMemo(memo);
+				groupTasks.add(pool.submit(new GreedyTask(group, root, currentML, ml, maxJoinNodes, taskMemo)));
+				taskMemos.add(taskMemo);
+			}
+			else{
+				// one task for each first node of the combinations
+				int N = Math.min(group.size(), maxJoinNodes);
+				for(int first = 0; first < N - 1; first++){
+					JoinSavingsMemo taskMemo = new JoinSavingsMemo(memo);
+					groupTasks.add(pool.submit(new CombinationTask(group, first, root, currentML, ml, maxJoinNodes, 
+							taskMemo, maxSavings)));
+					taskMemos.add(taskMemo);
+				}
+			}
+			tasks.add(groupTasks);
+		}
+		
+		// reduce the results in the order of the sequential search
+		long tested = 0;
+		long pruned = 0;
+		for(List<ForkJoinTask<JoinOperation>> groupTasks : tasks){
 			
-			// test the join combination
-			JoinOperation join = testJoinCombinations(savingsMap.get(attribute), root, currentML, ml, 
-					maxJoinNodes, testedComb);
+			// best join of the attribute: the combinations are ordered by their size first
+			JoinOperation groupJoin = new JoinOperation(null, 0.0);
+			for(ForkJoinTask<JoinOperation> task : groupTasks){
+				JoinOperation join = task.join();
+				tested += join.getTestedJoins();
+				pruned += join.getPrunedJoins();
+				if(join.getSavings() > groupJoin.getSavings() || (join.getSavings() == groupJoin.getSavings() 
+						&& groupJoin.getNodes() != null && join.getNodes().size() < groupJoin.getNodes().size())){
+					groupJoin = join;
+				}
+			}
 			
 			// replace the best join if the savings of the tested join are larger
-			if(join.getSavings() > bestJoin.getSavings()){
-				bestJoin = join;
+			if(groupJoin.getSavings() > bestJoin.getSavings()){
+				bestJoin = groupJoin;
 			}
 		}		
+		
+		// keep the savings of the tested joins for the next iterations
+		for(JoinSavingsMemo taskMemo : taskMemos){
+			memo.putAll(taskMemo);
+		}
+		
+		bestJoin.setSearchStatistics(tested, pruned);
 		return bestJoin;
 	}
 	
@@ -53,7 +120,7 @@ public class SelectBestJoin {
 	 * @param nodes - a list of nodes that could be joined
 	 * @return communication savings map
 	 */
-	protected static HashMap<String, ArrayList<TreeNode>> createSavingsMap(ArrayList<TreeNode> nodes){
+	protected static HashMap<String, ArrayList<TreeNode>> createSavingsMap(Collection<TreeNode> nodes){
 		
 		// create a map which saves for each attribute the nodes with split savings on the attribute				
 		HashMap<String, ArrayList<TreeNode>> savingsMap = Maps.newHashMap();
@@ -85,15 +152,23 @@ public class SelectBestJoin {
 	/**
 	 * Method to test all join combinations for a given list of nodes. For each combination the communication 
 	 * savings are calculated and the combination with the largest savings is returned. 
+	 * The combinations are enumerated as a tree of partial combinations (branch and bound): if an upper bound 
+	 * of the savings of all combinations starting with a partial combination (see bound()) does not exceed 
+	 * the best savings found so far, these combinations are skipped. The result is the same as if all 
+	 * combinations were tested.
+	 * Only the combinations starting with a given node are tested, so the combinations can be distributed over 
+	 * several tasks. The best savings found so far are shared between the tasks.
 	 * @param nodes - a list of nodes that could be joined
+	 * @param first - the index of the first node of the combinations
 	 * @param currentML - the current message length for the tree
 	 * @param ml - object providing methods to calculate the message length	
 	 * @param maxJoinNodes - the maximum number of nodes involved in a join (set by user)
-	 * @param testedComb - the join combinations already tested
-	 * @return the join operation with the highest communication savings
+	 * @param memo - the savings of the joins tested before
+	 * @param maxSavings - the best savings found by all tasks so far (bits of a double value)
+	 * @return the join operation with the highest communication savings (the first one if there are several)
 	 */
-	protected static JoinOperation testJoinCombinations(ArrayList<TreeNode> nodes, TreeNode root, 
-			double currentML, MessageLength ml, int maxJoinNodes, Set<int[]> testedComb){								
+	protected static JoinOperation testJoinCombinations(ArrayList<TreeNode> nodes, int first, TreeNode root, 
+			double currentML, MessageLength ml, int maxJoinNodes, JoinSavingsMemo memo, AtomicLong maxSavings){								
 		
 		// the number of nodes possibly involved in a join		
 		int N = nodes.size();		
@@ -108,53 +183,63 @@ public class SelectBestJoin {
 		
 		// if there is only one node, no join is possible
 		if(N == 1) return bestJoin;				
+		
+		// get the message length, the class frequencies and the maximum gain of each node (for the bounds)
+		double[] length = new double[N];
+		int[][] classFreq = new int[N][];
+		double[] gain = new double[N];
+		for(int i = 0; i < N; i++){
+			length[i] = ml.treeLength(nodes.get(i));
+			classFreq[i] = nodes.get(i).getRemainingData().getClassFreq();
+			gain[i] = length[i] - ml.encodeEntropy(classFreq[i]);
+		}
+		double[][] maxGain = sumLargestGains(gain);
+		long tested = 0;
+		long pruned = 0;
 			
-		// test all combinations -> binomial(N, K)
-		for(int K = 2; K <= N; K++){
+		// test all combinations starting with the first node -> binomial(N - 1 - first, K - 1)
+		for(int K = 2; K <= N - first; K++){
 			
 			// get the combination by index        
 			int combination[] = new int[K];
          
-			// position of current index
+			// position of current index (the first position is fixed)
 			int r = 0;      
-			int index = 0;
+			int index = first;
 		
 			while(r >= 0){
-				if(index <= (N + (r - K))){
+				if(index <= (N + (r - K)) && (r > 0 || index == first)){
 					combination[r] = index;                    
+					
+					// skip all combinations starting with the current nodes if they cannot produce larger savings 
+					double threshold = Math.max(bestJoin.getSavings(), 
+							Double.longBitsToDouble(maxSavings.get())) - BOUND_TOLERANCE;
+					if(bound(combination, r, K, length, classFreq, maxGain, ml) < threshold){
+						pruned += LongMath.binomial(N - 1 - index, K - 1 - r);
+						index++;
+						continue;
+					}
                 
 					// if we are at the last position print and increase the index
 					if(r == K-1){					
 						// at this point we obtained one combination pattern of the desired size												
-						// check if combination was already tested
-						if(!testedComb.contains(combination)){														
+						// add nodes included in this combination to new node list
+						ArrayList<TreeNode> joinNodes = new ArrayList<TreeNode>();          
+						for(int c : combination){
+							joinNodes.add(nodes.get(c));                		
+						}														
 						
-							// add nodes included in this combination to new node list
-							ArrayList<TreeNode> joinNodes = new ArrayList<TreeNode>();          
-							for(int c : combination){
-								joinNodes.add(nodes.get(c));                		
-							}														
-							
-							// if all nodes have the same parent and this parent has no other children
-							// the set of nodes cannot form a join (this is checked here)
-							if(checkForCommonParent(joinNodes)){
-							
-								// create a join operation
-								JoinOperation join = new JoinOperation(joinNodes, 0.0);
-                								
-								// calculate the ML savings obtained with the join
-								double savings = calculateMLsavings(join, root, currentML, ml);
-								join.setSavings(savings);
-				
-								// if the savings are greater than for all other joins so far,
-								// set the join as the best join operation                
-								if(join.getSavings() > bestJoin.getSavings()){
-									bestJoin = join;
-								}	
-								
-								// add combination to set of tested combinations
-								testedComb.add(combination);
-							}
+						// calculate the ML savings obtained with the join (or look them up)
+						JoinOperation join = testJoin(joinNodes, root, currentML, ml, memo);
+						if(join != null){
+							tested++;
+			
+							// if the savings are greater than for all other joins so far,
+							// set the join as the best join operation                
+							if(join.getSavings() > bestJoin.getSavings()){
+								bestJoin = join;
+								updateMaxSavings(maxSavings, join.getSavings());
+							}	
 						}
                 	
 						// increase index
@@ -176,11 +261,157 @@ public class SelectBestJoin {
 			}			
         } 
 		
+		bestJoin.setSearchStatistics(tested, pruned);
 		return bestJoin;		
 	}
 	
 	/**
-	 * Method to calculate the communication savings for a join operation.
+	 * Method to calculate an upper bound of the savings of all joins that contain the nodes of a partial 
+	 * combination and K nodes in total (the remaining nodes are taken from the nodes after the last node 
+	 * of the partial combination).
+	 * The savings of a join of the nodes in T are sum_{v in T} L(v) - C(T) - S(T), where L(v) is the message 
+	 * length of the leaf v, C(T) is the category message of the joined node and S(T) >= 0 its structure cost. 
+	 * C(T) is at least N_T * H(T) (entropy of the class frequencies, see MessageLength.encodeEntropy()) and 
+	 * due to the concavity of the entropy N_T * H(T) >= N_S * H(S) + sum_{v in T\S} N_v * H(v). Thus, the savings 
+	 * are bounded by sum_{v in S} L(v) - N_S * H(S) + sum_{v in T\S} g(v) with g(v) = L(v) - N_v * H(v) >= 0, 
+	 * and the last sum is bounded by the sum of the largest gains of the remaining nodes.
+	 * @param combination - the indices of the nodes in the combination
+	 * @param r - the last position of the partial combination
+	 * @param K - the number of nodes in the join
+	 * @param length - the message lengths of the nodes
+	 * @param classFreq - the class frequencies of the nodes
+	 * @param maxGain - the sums of the largest gains (see sumLargestGains())
+	 * @param ml - object providing methods to calculate the message length
+	 * @return upper bound of the savings 
+	 */
+	private static double bound(int[] combination, int r, int K, double[] length, int[][] classFreq, 
+			double[][] maxGain, MessageLength ml){
+		double bound = 0.0;
+		int[] freq = new int[classFreq[0].length];
+		for(int i = 0; i <= r; i++){
+			bound += length[combination[i]];
+			for(int c = 0; c < freq.length; c++) freq[c] += classFreq[combination[i]][c];
+		}
+		bound -= ml.encodeEntropy(freq);
+		return bound + maxGain[combination[r] + 1][K - 1 - r];
+	}
+	
+	/**
+	 * Method to raise the best savings shared between the tasks 
+	 * @param maxSavings - the best savings found so far (bits of a double value)
+	 * @param savings - the savings of a tested join
+	 */
+	private static void updateMaxSavings(AtomicLong maxSavings, double savings){
+		long current = maxSavings.get();
+		while(savings > Double.longBitsToDouble(current) 
+				&& !maxSavings.compareAndSet(current, Double.doubleToLongBits(savings))){
+			current = maxSavings.get();
+		}
+	}
+	
+	/**
+	 * Method to calculate the sums of the largest gains of the nodes from each position on
+	 * @param gain - the gains of the nodes 
+	 * @return the sums (first index: position of the first node, second index: number of gains in the sum)
+	 */
+	private static double[][] sumLargestGains(double[] gain){
+		int N = gain.length;
+		double[][] maxGain = new double[N + 1][];
+		maxGain[N] = new double[1];
+		for(int i = 0; i < N; i++){
+			double[] sorted = Arrays.copyOfRange(gain, i, N);
+			Arrays.sort(sorted);
+			maxGain[i] = new double[sorted.length + 1];
+			for(int m = 1; m <= sorted.length; m++){
+				maxGain[i][m] = maxGain[i][m - 1] + Math.max(sorted[sorted.length - m], 0.0);
+			}
+		}
+		return maxGain;
+	}
+	
+	/**
+	 * Method to search for a join of a given list of nodes in polynomial time (greedy agglomerative search). 
+	 * First, all pairs of nodes are tested. The pair with the largest savings is then extended by the node 
+	 * which increases the savings the most, as long as the savings increase and the maximum number of nodes
+	 * is not reached. Thus, O(N^2 + N * maxJoinNodes) joins are tested instead of 2^N.
+	 * @param nodes - a list of nodes that could be joined
+	 * @param currentML - the current message length for the tree
+	 * @param ml - object providing methods to calculate the message length	
+	 * @param maxJoinNodes - the maximum number of nodes involved in a join (set by user)
+	 * @param memo - the savings of the joins tested before
+	 * @return the join operation with the highest communication savings found
+	 */
+	protected static JoinOperation searchGreedyJoin(ArrayList<TreeNode> nodes, TreeNode root, 
+			double currentML, MessageLength ml, int maxJoinNodes, JoinSavingsMemo memo){
+		
+		// initialize best join operation object
+		JoinOperation bestJoin = new JoinOperation(null, 0.0);
+		int N = nodes.size();
+		
+		// test all pairs of nodes
+		for(int i = 0; i < N - 1; i++){
+			for(int j = i + 1; j < N; j++){
+				ArrayList<TreeNode> joinNodes = new ArrayList<TreeNode>(Arrays.asList(nodes.get(i), nodes.get(j)));
+				JoinOperation join = testJoin(joinNodes, root, currentML, ml, memo);
+				if(join != null && join.getSavings() > bestJoin.getSavings()){
+					bestJoin = join;
+				}
+			}
+		}
+		
+		// no pair produces savings
+		if(bestJoin.getNodes() == null) return bestJoin;
+		
+		// add nodes to the join as long as the savings increase
+		boolean grow = true;
+		while(grow && bestJoin.getNodes().size() < maxJoinNodes){
+			grow = false;
+			JoinOperation bestExtension = bestJoin;
+			for(TreeNode v : nodes){
+				if(bestJoin.getNodes().contains(v)) continue;
+				ArrayList<TreeNode> joinNodes = new ArrayList<TreeNode>(bestJoin.getNodes());
+				joinNodes.add(v);
+				JoinOperation join = testJoin(joinNodes, root, currentML, ml, memo);
+				if(join != null && join.getSavings() > bestExtension.getSavings()){
+					bestExtension = join;
+					grow = true;
+				}
+			}
+			bestJoin = bestExtension;
+		}
+		return bestJoin;
+	}
+	
+	/**
+	 * Method to test a join of a set of nodes. If the join was tested before, the savings are taken from the memo.
+	 * @param joinNodes - the nodes involved in the join
+	 * @param root - the root of the decision graph
+	 * @param currentML - the current message length for the graph
+	 * @param ml - object providing methods to calculate the message length
+	 * @param memo - the savings of the joins tested before
+	 * @return the join operation with its savings (null if the nodes cannot form a join)
+	 */
+	private static JoinOperation testJoin(ArrayList<TreeNode> joinNodes, TreeNode root, double currentML, 
+			MessageLength ml, JoinSavingsMemo memo){
+		
+		// if all nodes have the same parent and this parent has no other children
+		// the set of nodes cannot form a join (this is checked here)
+		if(!checkForCommonParent(joinNodes)) return null;
+		
+		// create a join operation and calculate the ML savings obtained with the join (if not known yet)
+		JoinOperation join = new JoinOperation(joinNodes, 0.0);
+		Double savings = memo.get(joinNodes);
+		if(savings == null){
+			savings = calculateMLsavings(join, root, currentML, ml);
+			memo.put(joinNodes, savings);
+		}
+		join.setSavings(savings);
+		return join;
+	}
+	
+	/**
+	 * Method to calculate the communication savings for a join operation. The join is not performed, 
+	 * the message length of the joined node is calculated from the class frequencies of the nodes.
 	 * @param join - a join operation
 	 * @param root - the root of the decision graph
 	 * @param currentML - the current message length for the graph
@@ -196,18 +427,12 @@ public class SelectBestJoin {
 			curML += ml.treeLength(v);						
 		}
 		
-		// perform the join
-		join.perform();	
-		
 		// new ML
-		double newML = ml.treeLength(join.getJoinedNode());
+		double newML = ml.joinLength(join.getNodes());
 		
 		// calculate the savings obtained with the join		
 		double savings = curML - newML;						
 		
-		// reverse the join
-		join.reverse();
-		
 		return savings;
 	}	
 		
@@ -228,4 +453,67 @@ public class SelectBestJoin {
 		return true;		
 	}
 	
+	/**
+	 * Task to test the join combinations starting with a given node
+	 */
+	private static class CombinationTask extends RecursiveTask<JoinOperation> {
+		
+		private static final long serialVersionUID = 1L;
+		private final ArrayList<TreeNode> nodes;
+		private final int first;
+		private final TreeNode root;
+		private final double currentML;
+		private final MessageLength ml;
+		private final int maxJoinNodes;
+		private final JoinSavingsMemo memo;
+		private final AtomicLong maxSavings;
+		
+		CombinationTask(ArrayList<TreeNode> nodes, int first, TreeNode root, double currentML, MessageLength ml, 
+				int maxJoinNodes, JoinSavingsMemo memo, AtomicLong maxSavings){
+			this.nodes = nodes;
+			this.first = first;
+			this.root = root;
+			this.currentML = currentML;
+			this.ml = ml;
+			this.maxJoinNodes = maxJoinNodes;
+			this.memo = memo;
+			this.maxSavings = maxSavings;
+		}
+
+		@Override
+		protected JoinOperation compute() {
+			return testJoinCombinations(this.nodes, this.first, this.root, this.currentML, this.ml, 
+					this.maxJoinNodes, this.memo, this.maxSavings);
+		}
+	}
+	
+	/**
+	 * Task to search greedily for a join of a given list of nodes
+	 */
+	private static class GreedyTask extends RecursiveTask<JoinOperation> {
+		
+		private static final long serialVersionUID = 1L;
+		private final ArrayList<TreeNode> nodes;
+		private final TreeNode root;
+		private final double currentML;
+		private final MessageLength ml;
+		private final int maxJoinNodes;
+		private final JoinSavingsMemo memo;
+		
+		GreedyTask(ArrayList<TreeNode> nodes, TreeNode root, double currentML, MessageLength ml, 
+				int maxJoinNodes, JoinSavingsMemo memo){
+			this.nodes = nodes;
+			this.root = root;
+			this.currentML = currentML;
+			this.ml = ml;
+			this.maxJoinNodes = maxJoinNodes;
+			this.memo = memo;
+		}
+
+		@Override
+		protected JoinOperation compute() {
+			return searchGreedyJoin(this.nodes, this.root, this.currentML, this.ml, this.maxJoinNodes, this.memo);
+		}
+	}
+	
 }
@@ -1,27 +1,35 @@
 package org.decisionGraph;
 
+import java.util.concurrent.ForkJoinPool;
+
 public class SelectBestOperation {
 	
 	private MessageLength ml;
 	private boolean allowJoins;
 	private boolean prefJoins;
 	private int maxJoinNodes;
+	private boolean greedyJoins;
+	private ForkJoinPool pool;
 
 	public SelectBestOperation(MessageLength messageLength, boolean allowJoins, 
-			boolean prefJoins, int maxJoinNodes){		
+			boolean prefJoins, int maxJoinNodes, boolean greedyJoins, ForkJoinPool pool){		
 		this.allowJoins = allowJoins;
 		this.prefJoins = prefJoins;
 		this.ml = messageLength;
 		this.maxJoinNodes = maxJoinNodes;
+		this.greedyJoins = greedyJoins;
+		this.pool = pool;
 	}
 	
 	protected Operation select(DecisionGraph tree) {			
 		
-		SplitOperation split = SelectBestSplit.select(tree.getLeaves(), this.ml);
+		// the split search has to evaluate the new leaves first, the join search needs their split savings
+		SplitOperation split = SelectBestSplit.select(tree.pollNewLeaves(), tree.getSplitQueue(), this.ml, 
+				this.pool);
 		if(!allowJoins) return split;
 		
 		JoinOperation join = SelectBestJoin.select(tree.getLeaves(), tree.getRoot(), tree.getML(), this.ml,
-				this.maxJoinNodes);		
+				this.maxJoinNodes, this.greedyJoins, tree.getJoinMemo(), this.pool);		
 		
 		if(this.prefJoins){		
 			if(join.getSavings() > 0) return join;
@@ -1,45 +1,53 @@
 package org.decisionGraph;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 public class SelectBestSplit {
 	
 	/**
-	 * Select the best split among all leaves
-	 * @param leaves - the leaf nodes in the decision tree/graph
+	 * Select the best split among all leaves. 
+	 * Only the leaves created since the last call are evaluated, the best splits of the other leaves are 
+	 * kept in the queue. The new leaves are evaluated in parallel (within each leaf, the attributes are 
+	 * evaluated in parallel as well). The results are added to the queue in the order of the leaves, 
+	 * so the selected split does not depend on the number of threads.
+	 * @param newLeaves - the leaf nodes created since the last call
+	 * @param queue - the queue of the best splits of the leaves
+	 * @param ml - object that provides methods to calculate the message length
+	 * @param pool - the pool of threads used to evaluate the splits
 	 * @return the split operation producing the greatest savings in message length	
 	 */
-	protected static SplitOperation select(ArrayList<TreeNode> leaves, MessageLength ml) {
+	protected static SplitOperation select(List<TreeNode> newLeaves, SplitQueue queue, MessageLength ml, 
+			ForkJoinPool pool) {
 		
-		// initialize variables (savings for best split should be greater than 0)
-		SplitOperation bestSplit = new SplitOperation(null, null, 0.0);
-		SplitOperation split;		
+		// start the search for the best split in all new leaves 
+		// (empty and pure leaves are excluded, nothing can be done there)
+		List<ForkJoinTask<SplitOperation>> tasks = new ArrayList<ForkJoinTask<SplitOperation>>(newLeaves.size());
+		for(TreeNode v: newLeaves){
+			if(!(v.isEmpty()) && !(v.isPure())) tasks.add(pool.submit(new LeafTask(v, ml)));
+		}
 		
-		// loop over all leaves to find the best split operation
-		for(TreeNode v: leaves){
-			
-			// exclude empty and pure leafs (nothing can be done there)
-			if(!(v.isEmpty()) && !(v.isPure())){	
-				
-				// was the best split already computed for the leaf? If yes, use it
-				if(v.getBestSplit() != null) split = (SplitOperation) v.getBestSplit();
-				
-				// if no, select the best split
-				else split = selectBestSplitNode(v, ml);
-				
-				// if the savings are greater than for all other splits so far, set the split as the best split
-				if(split.getSavings() > bestSplit.getSavings()){
-						bestSplit = split;
-				}		
-			}
-		}							
+		// add the splits producing savings to the queue
+		for(ForkJoinTask<SplitOperation> task : tasks){
+			SplitOperation split = task.join();
+			if(split.getSavings() > 0.0) queue.add(split);
+		}
+		
+		// obtain the best split (savings for best split should be greater than 0)
+		SplitOperation bestSplit = queue.peekBest();
+		if(bestSplit == null) return new SplitOperation(null, null, 0.0);		
 		return bestSplit;
 	}
 	
 	/**
-	 * Select the best split operation for a specific node
+	 * Select the best split operation for a specific node (must be called within a ForkJoinPool)
 	 * @param node - the node that should be split
-	 * @param remainingAttributes - the attributes still available for splitting
+	 * @param ml - object that provides methods to calculate the message length
 	 * @return the split operation producing the greatest savings in message length
 	 */
 	private static SplitOperation selectBestSplitNode(TreeNode node, MessageLength ml) {
@@ -54,22 +62,32 @@ public class SelectBestSplit {
 		SplitOperation bestSplit = new SplitOperation(null, null, 0.0);
 				
 		// current local message length
-		double currentML = ml.graphLength(node);
+		double currentML = ml.treeLength(node);
 		
-		// loop over all remaining attributes and perform tentative splits
-		for(String s: node.getRemainingAttributes()){		
-			
-			// create split operation
-			SplitOperation split = new SplitOperation(node, s, 0.0);
-			
-			// mark if split is on a continuous attribute			
-			if(node.getRemainingData().getColTypes().get(s).equals("DoubleCell") ||
-			   node.getRemainingData().getColTypes().get(s).equals("IntCell")){					
-				split.setContinuousSplit();				
-			}
-			
-			// calculate ML savings for the split on attribute s			
-			split.setSavings(calculateMLsavings(split, currentML, ml));	
+		// count the class frequencies for the values of all nominal attributes in one scan
+		final Data data = node.getRemainingData();
+		int[][][] classFreqCube = data.getClassFreqCube(node.getRemainingAttributes());
+		
+		// sort the remaining attributes by the column order (ties are broken by this order)
+		List<String> attributes = new ArrayList<String>(node.getRemainingAttributes());
+		Collections.sort(attributes, new Comparator<String>(){
+			@Override
+			public int compare(String a1, String a2) {
+				return Integer.compare(data.getColIndex(a1), data.getColIndex(a2));
+			}			
+		});
+		
+		// calculate the savings for the splits on all remaining attributes in parallel
+		List<AttributeTask> tasks = new ArrayList<AttributeTask>(attributes.size());
+		for(String s : attributes){
+			tasks.add(new AttributeTask(new SplitOperation(node, s, 0.0), currentML, ml, classFreqCube));
+		}
+		ForkJoinTask.invokeAll(tasks);
+		
+		// loop over all remaining attributes (in column order) 
+		for(AttributeTask task : tasks){		
+			SplitOperation split = task.join();
+			String s = split.getSplitAttribute();
 			
 			// remember for which attributes the split produces positive savings
 			if(split.getSavings() > 0.0) split.getNode().addSplitSavings(s);
@@ -87,23 +105,27 @@ public class SelectBestSplit {
 	}		
 	
 	/**
-	 * Calculate the savings in message length for a split operation
+	 * Calculate the savings in message length for a split operation. The split is not performed, 
+	 * the new message length is calculated from the class frequencies of the subsets the split would produce.
 	 * @param split - the split for which the savings should be computed	 
 	 * @param currentML - the message length of the leaf node before splitting
+	 * @param classFreqCube - the class frequencies for the values of the nominal attributes in the node
 	 * @return the savings in message length for the split operation	
 	 */
-	private static double calculateMLsavings(SplitOperation split, double currentML, MessageLength ml) {
+	private static double calculateMLsavings(SplitOperation split, double currentML, MessageLength ml, 
+			int[][][] classFreqCube) {
 		
 		double newML = 0.0;		
 		
 		// if attribute is categorical
 		if(!split.getContinuousSplit()){
 			
-			// perform a tentative split
-			split.perform();
+			// get the class frequencies of the children (one child for each value of the attribute)
+			Data data = split.getNode().getRemainingData();
+			int[][] childFreq = classFreqCube[data.getColIndex(split.getSplitAttribute())];
 			
 			// new local message length
-			newML += ml.treeLength(split.getNode());
+			newML += ml.splitLength(split.getNode(), childFreq);
 		}
 		
 		// if attribute is numeric (integer or double values)
@@ -122,25 +144,71 @@ public class SelectBestSplit {
 				
 				// set the cut value for the split				
 				split.setCutValue(cutValue);
-							
-				// perform a tentative split at the cut-off value
-				split.perform();
 			
-				// new local message length
-				newML += ml.treeLength(split.getNode());
+				// new local message length (from the class frequencies below and above the cut value)
+				newML += ml.splitLength(split.getNode(), cs.getCutClassFreq());
 			
 				// add bits to specify the cut-off value				
-				newML += (Math.log(cs.getUniqueValues() - 1)) / Math.log(2);					
+				newML += ml.log2(cs.getUniqueValues() - 1);					
 			}				
 		}	
 		
 		// calculate the savings accomplished with the split		
 		double MLsavings = currentML - newML;		
 		
-		// reverse the split
-		split.reverse();
-		
 		return MLsavings;
 	}	
+	
+	/**
+	 * Task to select the best split operation for a leaf 
+	 */
+	private static class LeafTask extends RecursiveTask<SplitOperation> {
+		
+		private static final long serialVersionUID = 1L;
+		private final TreeNode node;
+		private final MessageLength ml;
+		
+		LeafTask(TreeNode node, MessageLength ml){
+			this.node = node;
+			this.ml = ml;
+		}
+
+		@Override
+		protected SplitOperation compute() {
+			return selectBestSplitNode(this.node, this.ml);
+		}
+	}
+	
+	/**
+	 * Task to calculate the savings of a split on a single attribute
+	 */
+	private static class AttributeTask extends RecursiveTask<SplitOperation> {
+		
+		private static final long serialVersionUID = 1L;
+		private final SplitOperation split;
+		private final double currentML;
+		private final MessageLength ml;
+		private final int[][][] classFreqCube;
+		
+		AttributeTask(SplitOperation split, double currentML, MessageLength ml, int[][][] classFreqCube){
+			this.split = split;
+			this.currentML = currentML;
+			this.ml = ml;
+			this.classFreqCube = classFreqCube;
+		}
+		
+		@Override
+		protected SplitOperation compute() {
+			
+			// mark if split is on a continuous attribute			
+			if(this.split.getNode().getRemainingData().isNumeric(this.split.getSplitAttribute())){					
+				this.split.setContinuousSplit();				
+			}
+			
+			// calculate ML savings for the split on the attribute			
+			this.split.setSavings(calculateMLsavings(this.split, this.currentML, this.ml, this.classFreqCube));
+			return this.split;
+		}
+	}
 
 }
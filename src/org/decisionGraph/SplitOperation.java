@@ -1,7 +1,5 @@
 package org.decisionGraph;
 
-import java.util.ArrayList;
-
 public class SplitOperation extends Operation{
 
 	private TreeNode node;
@@ -39,9 +37,14 @@ public class SplitOperation extends Operation{
 	}
 	
 	@Override
-	public void updateLeaves(ArrayList<TreeNode> leaves){
-		leaves.remove(this.node);
-		leaves.addAll(this.node.getChildren());
+	public void updateLeaves(DecisionGraph graph){
+		graph.removeLeaf(this.node);
+		for(TreeNode child : this.node.getChildren()) graph.addLeaf(child);
+	}
+	
+	@Override
+	public void markDirty(){
+		this.node.markDirty();
 	}
 	
 	@Override
@@ -58,7 +61,7 @@ public class SplitOperation extends Operation{
 		if(this.continuousSplit) System.out.println("The cut value is " + this.cutValue);
 		System.out.println("Savings are " + Math.round(this.savings) + " bits (rounded)");
 		for(TreeNode node : this.node.getChildren()){
-			System.out.println(node.getParentSplitValue() + " -> " + node.getClassFreq());
+			System.out.println(node.getParentSplitValue() + " -> " + node.getClassFreqMap());
 		}
 	}
 
@@ -0,0 +1,72 @@
+package org.decisionGraph;
+
+import java.util.PriorityQueue;
+
+/**
+ * Priority queue of the best split operations of the leaves, ordered by decreasing savings in message 
+ * length. Splits with equal savings are ordered by the time they were added (i.e., by the order of the leaves 
+ * in the graph). Splits of nodes which are no longer leaves are removed lazily when the best split is requested.
+ */
+public class SplitQueue {
+	
+	private PriorityQueue<Entry> queue; // the best splits of the leaves
+	private long sequence; // number of splits added so far (used to break ties)
+	
+	/**
+	 * Constructor
+	 */
+	public SplitQueue(){
+		this.queue = new PriorityQueue<Entry>();
+		this.sequence = 0;
+	}
+	
+	/**
+	 * Add the best split of a leaf
+	 * @param split - the split operation
+	 */
+	public void add(SplitOperation split){
+		this.queue.add(new Entry(split, this.sequence++));
+	}
+	
+	/**
+	 * Obtain the split with the largest savings among all splits of nodes that are still leaves
+	 * @return the best split operation (null if there is none)
+	 */
+	public SplitOperation peekBest(){
+		
+		// remove the splits of nodes which were split or joined in the meantime
+		while(!this.queue.isEmpty() && !this.queue.peek().split.getNode().isLeaf()){
+			this.queue.poll();
+		}
+		if(this.queue.isEmpty()) return null;
+		return this.queue.peek().split;
+	}
+	
+	public int size(){
+		return this.queue.size();
+	}
+	
+	/**
+	 * Entry of the queue (split operation and the position at which it was added)
+	 */
+	private static class Entry implements Comparable<Entry> {
+		
+		private final SplitOperation split;
+		private final double savings;
+		private final long sequence;
+		
+		Entry(SplitOperation split, long sequence){
+			this.split = split;
+			this.savings = split.getSavings();
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo(Entry other) {
+			int c = Double.compare(other.savings, this.savings);
+			if(c != 0) return c;
+			return Long.compare(this.sequence, other.sequence);
+		}
+	}
+	
+}
@@ -1,8 +1,10 @@
 package org.decisionGraph;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -16,11 +18,14 @@ public class TreeNode {
 	private ArrayList<TreeNode> children;
 	private Data remainingData;
 	private Set<String> remainingAttributes;	
-	private Map<DataCell, Integer> classFreq;
-	private ArrayList<DataCell> classVec;
+	private int[] classFreq; // frequencies of the class values (indexed by the dictionary code of the class)
+	private DataCell[] classValues; // the class values (indexed by code; kept when the data is released)
+	private int size; // the number of instances in the node
 	private Boolean continuousSplit;
 	private SplitOperation bestSplit;
 	private Set<String> splitSavings;
+	private double treeLength; // cached message length of the subtree rooted at this node
+	private ArrayList<TreeNode> subtreeJoinNodes; // cached join nodes in the subtree (null if cache is dirty)
 	
 	/**
 	 * Constructor
@@ -35,11 +40,13 @@ public class TreeNode {
 		this.splitAttribute = null;							
 		this.remainingData = remainingData;
 		this.remainingAttributes = remainingData.getAttributes();
-		this.classVec = remainingData.getClassVec();
+		this.classValues = remainingData.getClassDictionary();
+		this.size = (int) remainingData.getNrow();
 		this.classFreq = null;	
 		this.continuousSplit = false;
 		this.bestSplit = null;
 		this.splitSavings = new HashSet<String>();
+		this.subtreeJoinNodes = null;
 	}
 	
 	/**
@@ -54,13 +61,15 @@ public class TreeNode {
 		
 		// create a new ArrayList to save the children
 		this.children = new ArrayList<TreeNode>();
+		this.clearTreeLength();
 		
-		// get the subsets
-		HashMap<DataCell, Data> subsetMap = data.partition(splitAttribute);	
+		// get the subsets (one for each value of the attribute) 
+		Data[] subsets = data.partition(splitAttribute);	
+		DataCell[] condValues = data.getDictionary(splitAttribute);
 		
 		// loop over the subsets and create new leaf nodes
-		for(DataCell condValue : subsetMap.keySet()){					
-			TreeNode u = new TreeNode(this, condValue, subsetMap.get(condValue));	
+		for(int code = 0; code < subsets.length; code++){					
+			TreeNode u = new TreeNode(this, condValues[code], subsets[code]);	
 			u.computeClassFreq();
 			this.addChild(u);					
 		}		
@@ -81,6 +90,7 @@ public class TreeNode {
 		
 		// create a new ArrayList to save the children
 		this.children = new ArrayList<TreeNode>();
+		this.clearTreeLength();
 			
 		// split the data by the cut-off value
 		Data[] subsets = data.partition(splitAttribute, cutValue);					
@@ -109,31 +119,19 @@ public class TreeNode {
 	}
 	
 	/**
-	 * Method to compute a map which holds the frequency of each class value in the node
+	 * Method to set the frequency of each class value in the node 
+	 * (the frequencies are obtained when the data is partitioned, they are not counted row by row)
 	 */
 	public void computeClassFreq(){
 		
 		// if no observation is left, we use the frequency table of the parent
-		if(this.classVec.size() == 0){
+		if(this.size == 0){
 			this.setClassFreq(this.getParent().getClassFreq());
 			return;
 		}
 		
-		// loop over the instances in the node and fill the map
-		Map<DataCell, Integer> classFreq = new HashMap<DataCell, Integer>();		
-		for(DataCell c : this.getClassVec()){			
-			
-			// put class/frequency pair in the map
-			if(!classFreq.containsKey(c)){
-				classFreq.put(c, 0);
-			}			
-			
-			// update class frequency
-			classFreq.put(c, classFreq.get(c) + 1);					
-		} 
-		
 		// set the class frequency table of the leaf node
-		this.setClassFreq(classFreq);		
+		this.setClassFreq(this.remainingData.getClassFreq());		
 	}
 	
 	/**
@@ -141,13 +139,32 @@ public class TreeNode {
 	 * @return the most frequent class (object of class DataCell)
 	 */
 	public DataCell getMostFreqClass(){
-		Map.Entry<DataCell, Integer> maxEntry = null;
-		for(Map.Entry<DataCell, Integer> entry : this.getClassFreq().entrySet()){
-			if(maxEntry == null || entry.getValue().compareTo(maxEntry.getValue()) > 0){
-				maxEntry = entry;
-			}
+		return this.classValues[this.getMostFreqClassCode()];
+	}
+	
+	/**
+	 * Method to obtain the code of the most frequent class value in a node
+	 * @return the code of the most frequent class (the first one if there are several)
+	 */
+	public int getMostFreqClassCode(){
+		int maxCode = 0;
+		for(int code = 1; code < this.classFreq.length; code++){
+			if(this.classFreq[code] > this.classFreq[maxCode]) maxCode = code;
 		}
-		return maxEntry.getKey();
+		return maxCode;
+	}
+	
+	/**
+	 * Method to release the training data of the node when the learning has finished. The node keeps
+	 * the split attribute, the split values, the children and the class frequencies (enough to classify 
+	 * records and to print the graph), but it cannot be split or joined anymore.
+	 */
+	public void releaseData(){
+		this.remainingData = null;
+		this.remainingAttributes = null;
+		this.bestSplit = null;
+		this.splitSavings = null;
+		this.subtreeJoinNodes = null;
 	}
 	
 	/**
@@ -155,11 +172,11 @@ public class TreeNode {
 	 * @return true, if all elements have the same class
 	 */
 	public boolean isPure(){
-		DataCell c1 = this.getClassVec().get(0);
-		for(DataCell c : this.getClassVec()){
-			if(!c.equals(c1)) return false;
+		int nclasses = 0;
+		for(int n : this.classFreq){
+			if(n > 0) nclasses++;
 		}
-		return true;
+		return nclasses <= 1;
 	}
 		
 	/**
@@ -185,13 +202,56 @@ public class TreeNode {
 	 * @return true, if node is empty
 	 */
 	public boolean isEmpty(){
-		if(this.classVec.size() == 0) return true;
+		if(this.size == 0) return true;
 		return false;
 	}
 			
 	public void addChild(TreeNode child) {
 		if(this.children == null) this.children = new ArrayList<TreeNode>();
 		this.children.add(child);
+		this.clearTreeLength();
+	}
+	
+	/**
+	 * Method to mark the cached message length of this node and of all its ancestors within the same tree 
+	 * as dirty, i.e., they are recomputed the next time the message length is requested. The walk stops at 
+	 * the root of the tree (the root of the graph or the child of a join), because the message length of a 
+	 * tree does not depend on the trees hanging below its join nodes.
+	 */
+	public void markDirty(){
+		TreeNode v = this;
+		while(v != null){
+			v.clearTreeLength();
+			if(v.getParent() == null || v.getParent().isJoin()) break;
+			v = v.getParent();
+		}
+	}
+	
+	/**
+	 * Cache the message length of the subtree rooted at this node
+	 * @param treeLength - the message length of the subtree 
+	 * @param joinNodes - the join nodes in the subtree
+	 */
+	public void setTreeLength(double treeLength, ArrayList<TreeNode> joinNodes){
+		this.treeLength = treeLength;
+		this.subtreeJoinNodes = joinNodes;
+	}
+	
+	public void clearTreeLength(){
+		this.subtreeJoinNodes = null;
+	}
+	
+	public boolean hasTreeLength(){
+		return this.subtreeJoinNodes != null;
+	}
+	
+	public double getTreeLength(){
+		return this.treeLength;
+	}
+	
+	public List<TreeNode> getSubtreeJoinNodes(){
+		if(this.subtreeJoinNodes == null) return Collections.emptyList();
+		return this.subtreeJoinNodes;
 	}
 	
 	public Set<String> getSplitSavings() {
@@ -207,16 +267,28 @@ public class TreeNode {
 		this.splitSavings.add(attribute);
 	}
 	
-	public void setClassFreq(Map<DataCell, Integer> classFreq){
+	public void setClassFreq(int[] classFreq){
 		this.classFreq = classFreq;
 	}
 	
-	public  Map<DataCell, Integer> getClassFreq(){
+	public int[] getClassFreq(){
 		return this.classFreq;
 	}
+	
+	/**
+	 * Obtain the class frequencies as a map from class values to frequencies (e.g., for printing)
+	 * @return the frequencies of the class values occurring in the node 
+	 */
+	public Map<DataCell, Integer> getClassFreqMap(){
+		Map<DataCell, Integer> map = new LinkedHashMap<DataCell, Integer>();
+		for(int code = 0; code < this.classFreq.length; code++){
+			if(this.classFreq[code] > 0) map.put(this.classValues[code], this.classFreq[code]);
+		}
+		return map;
+	}
 		
-	public ArrayList<DataCell> getClassVec(){
-		return this.classVec;
+	public int getSize(){
+		return this.size;
 	}
 	
 	public void setSplitAttribute(String attribute) {
@@ -245,6 +317,7 @@ public class TreeNode {
 
 	public void setChildren(ArrayList<TreeNode> children) {
 		this.children = children;
+		this.clearTreeLength();
 	}
 	
 	public ArrayList<TreeNode> getChildren() {
@@ -0,0 +1,182 @@
+package org.decisionGraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+import javax.tools.ToolProvider;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnDomainCreator;
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataColumnSpecCreator;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTable;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.container.DataContainer;
+import org.knime.core.data.def.DefaultRow;
+import org.knime.core.data.def.DoubleCell;
+import org.knime.core.data.def.IntCell;
+import org.knime.core.data.def.StringCell;
+import org.knime.core.node.InvalidSettingsException;
+
+/**
+ * Tests of the classes generated by DecisionGraphClassGenerator: the generated class, the compiled graph
+ * (CompiledDecisionGraph) and the interpreted graph (DecisionGraph.classify()) must predict the same classes.
+ */
+public class DecisionGraphClassGeneratorTest {
+
+	private static final String[] A_VALUES = {"a0", "a1", "a2"};
+	private static final String[] B_VALUES = {"b0", "b1", "b2", "b3"};
+	private static final String[] D_VALUES = {"d0", "d1", "d2", "d3", "d4"};
+	private static final String[] CLASS_VALUES = {"c0", "c1", "c2"};
+	private static final int TRAINING_ROWS = 600;
+	private static final int TEST_ROWS = 300;
+
+	private static DataTable training;
+	private static DataTable test;
+
+	@BeforeClass
+	public static void createTables(){
+		training = createTable(TRAINING_ROWS, 1);
+		test = createTable(TEST_ROWS, 2);
+	}
+
+	@Test
+	public void testTree() throws InvalidSettingsException {
+		checkPredictions(learnGraph(false), 256);
+	}
+
+	@Test
+	public void testGraphWithJoins() throws InvalidSettingsException {
+		DecisionGraph graph = learnGraph(true);
+
+		// the graph must contain a node with several parents (which becomes a method of the generated class)
+		int[] parents = new int[graph.getModel().getNumNodes()];
+		boolean joined = false;
+		for(int child : graph.getModel().getChildren()){
+			if(child >= 0 && ++parents[child] > 1) joined = true;
+		}
+		assertTrue("The graph contains no join", joined);
+		checkPredictions(graph, 256);
+	}
+
+	@Test
+	public void testMethodSplitting() throws InvalidSettingsException {
+		DecisionGraph graph = learnGraph(true);
+		CompiledDecisionGraph compiled = graph.getModel().compile(test.getDataTableSpec());
+
+		// with a small limit of inlined nodes, the subgraphs are split into more methods
+		int methods = countMethods(DecisionGraphClassGenerator.generateSource(compiled, "Test", 256));
+		int splitMethods = countMethods(DecisionGraphClassGenerator.generateSource(compiled, "Test", 4));
+		assertTrue("The subgraphs are not split into methods", splitMethods > methods);
+		checkPredictions(graph, 4);
+	}
+
+	@Test
+	public void testUnseenNominalValue() throws InvalidSettingsException {
+		DecisionGraph graph = learnGraph(true);
+		DecisionGraphModel model = graph.getModel();
+		assertEquals("The root is no nominal split", DecisionGraphModel.NOMINAL, model.getKind(0));
+		CompiledDecisionGraph compiled = model.compile(test.getDataTableSpec());
+		DecisionGraphPredictor generated = generate(compiled, 256);
+
+		// replace the value of the split attribute of the root by a value not seen in training: the most
+		// frequent class of the root is predicted
+		int col = test.getDataTableSpec().findColumnIndex(model.getAttributeNames()[model.getAttribute(0)]);
+		for(DataRow row : test){
+			DataCell[] cells = new DataCell[row.getNumCells()];
+			for(int j = 0; j < cells.length; j++) cells[j] = row.getCell(j);
+			cells[col] = new StringCell("unseen");
+			DataRow unseen = new DefaultRow("unseen", cells);
+			assertEquals("compiled graph", model.getMostFreqClassCode(0), compiled.classifyCode(unseen));
+			assertEquals("generated class", model.getMostFreqClassCode(0), generated.classifyCode(unseen));
+		}
+	}
+
+	/**
+	 * Method to check that the generated class, the compiled graph and the graph predict the same classes
+	 * @param graph - the learned graph
+	 * @param maxInlineNodes - the number of nodes inlined in a single method of the generated class
+	 */
+	private static void checkPredictions(DecisionGraph graph, int maxInlineNodes) throws InvalidSettingsException {
+		CompiledDecisionGraph compiled = graph.getModel().compile(test.getDataTableSpec());
+		DecisionGraphPredictor generated = generate(compiled, maxInlineNodes);
+		String[] classLabels = compiled.getClassLabels();
+		for(DataRow row : test){
+			int code = compiled.classifyCode(row);
+			assertEquals("compiled graph", graph.classify(row), classLabels[code]);
+			assertEquals("generated class", code, generated.classifyCode(row));
+		}
+	}
+
+	private static DecisionGraphPredictor generate(CompiledDecisionGraph compiled, int maxInlineNodes){
+		Assume.assumeNotNull(ToolProvider.getSystemJavaCompiler());
+		DecisionGraphPredictor generated = DecisionGraphClassGenerator.generate(compiled, maxInlineNodes);
+		assertNotNull("The class was not generated", generated);
+		return generated;
+	}
+
+	private static int countMethods(String source){
+		int count = 0;
+		for(int i = source.indexOf("private int node"); i >= 0; i = source.indexOf("private int node", i + 1)) count++;
+		return count;
+	}
+
+	private static DecisionGraph learnGraph(boolean joins){
+		Data data = new Data(training, TRAINING_ROWS, "Class", 0);
+		MessageLength ml = new MessageLength(0.5, CLASS_VALUES.length, TRAINING_ROWS, 4);
+		return new DecisionGraph(data, ml, joins, false, 4);
+	}
+
+	/**
+	 * Method to create a table with three nominal attributes, two numeric attributes and a class which
+	 * depends on them (with 5% noise)
+	 * @param nrow - the number of rows
+	 * @param seed - the seed of the random numbers
+	 * @return the table
+	 */
+	private static DataTable createTable(int nrow, long seed){
+		DataTableSpec spec = new DataTableSpec(
+				nominalColumn("A", A_VALUES),
+				nominalColumn("B", B_VALUES),
+				new DataColumnSpecCreator("X", DoubleCell.TYPE).createSpec(),
+				new DataColumnSpecCreator("Y", IntCell.TYPE).createSpec(),
+				nominalColumn("D", D_VALUES),
+				nominalColumn("Class", CLASS_VALUES));
+		DataContainer container = new DataContainer(spec);
+		Random random = new Random(seed);
+		for(int i = 0; i < nrow; i++){
+			int a = random.nextInt(3);
+			int b = random.nextInt(4);
+			int d = random.nextInt(5);
+			double x = Math.round(random.nextDouble() * 100) / 10.0;
+			int y = random.nextInt(21);
+			int c;
+			if(a == 0) c = x < 4.0 ? 0 : 1;
+			else if(a == 1) c = (b == 0 || b == 3) ? 2 : (y > 10 ? 0 : 1);
+			else c = (b == 0 || b == 3) ? 2 : (d < 2 ? 1 : 0);
+			if(random.nextDouble() < 0.05) c = random.nextInt(3);
+			container.addRowToTable(new DefaultRow("Row" + i, new StringCell(A_VALUES[a]),
+					new StringCell(B_VALUES[b]), new DoubleCell(x), new IntCell(y), new StringCell(D_VALUES[d]),
+					new StringCell(CLASS_VALUES[c])));
+		}
+		container.close();
+		return container.getTable();
+	}
+
+	private static DataColumnSpec nominalColumn(String name, String[] values){
+		Set<DataCell> domain = new LinkedHashSet<DataCell>();
+		for(String value : values) domain.add(new StringCell(value));
+		DataColumnSpecCreator creator = new DataColumnSpecCreator(name, StringCell.TYPE);
+		creator.setDomain(new DataColumnDomainCreator(domain).createDomain());
+		return creator.createSpec();
+	}
+}